@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.TimeUnit;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Measures actor creation and restart in an {@link ActorSystem} running in the benchmark JVM.
+ * <ul>
+ * <li>{@link #spawnRequestStop()} is the per request worker pattern: an actor is created, asked once and stopped.</li>
+ * <li>{@link #restart()} crashes a long lived actor and asks it once it has been restarted by its supervisor.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActorBenchmark {
+
+    private static final Timeout TIMEOUT = new Timeout(Duration.create(5, TimeUnit.SECONDS));
+
+    @Param({"1", "3", "10", "50"})
+    int contractSize;
+
+    private ActorSystem system;
+    private Props workerProps;
+    private ActorRef restartingWorker;
+
+    @Setup
+    public void setUp() throws Exception {
+        system = ActorSystem.create("benchmark", ConfigFactory.parseString("akka.loglevel = OFF\nakka.stdout-loglevel = OFF"));
+        workerProps = Props.create(Targets.benchmarkClass("Worker" + contractSize));
+        restartingWorker = system.actorOf(workerProps);
+    }
+
+    @TearDown
+    public void tearDown() {
+        system.shutdown();
+        system.awaitTermination();
+    }
+
+    @Benchmark
+    public Object spawnRequestStop() throws Exception {
+        final ActorRef worker = system.actorOf(workerProps);
+        final Object reply = ask(worker, new M0());
+        system.stop(worker);
+        return reply;
+    }
+
+    @Benchmark
+    public Object restart() throws Exception {
+        restartingWorker.tell(new Crash(), ActorRef.noSender());
+        return ask(restartingWorker, new M0());
+    }
+
+    private static Object ask(final ActorRef actor, final Object message) throws Exception {
+        return Await.result(Patterns.ask(actor, message, TIMEOUT), TIMEOUT.duration());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+/**
+ * Message types used by the benchmarks. {@link Unmapped} is not handled by any benchmark target.
+ */
+public final class BenchmarkMessages {
+
+    private BenchmarkMessages() {
+    }
+
+    public static final class M0 {
+    }
+
+    public static final class M1 {
+    }
+
+    public static final class M2 {
+    }
+
+    public static final class M3 {
+    }
+
+    public static final class M4 {
+    }
+
+    public static final class M5 {
+    }
+
+    public static final class M6 {
+    }
+
+    public static final class M7 {
+    }
+
+    public static final class M8 {
+    }
+
+    public static final class M9 {
+    }
+
+    public static final class M10 {
+    }
+
+    public static final class M11 {
+    }
+
+    public static final class M12 {
+    }
+
+    public static final class M13 {
+    }
+
+    public static final class M14 {
+    }
+
+    public static final class M15 {
+    }
+
+    public static final class M16 {
+    }
+
+    public static final class M17 {
+    }
+
+    public static final class M18 {
+    }
+
+    public static final class M19 {
+    }
+
+    public static final class M20 {
+    }
+
+    public static final class M21 {
+    }
+
+    public static final class M22 {
+    }
+
+    public static final class M23 {
+    }
+
+    public static final class M24 {
+    }
+
+    public static final class M25 {
+    }
+
+    public static final class M26 {
+    }
+
+    public static final class M27 {
+    }
+
+    public static final class M28 {
+    }
+
+    public static final class M29 {
+    }
+
+    public static final class M30 {
+    }
+
+    public static final class M31 {
+    }
+
+    public static final class M32 {
+    }
+
+    public static final class M33 {
+    }
+
+    public static final class M34 {
+    }
+
+    public static final class M35 {
+    }
+
+    public static final class M36 {
+    }
+
+    public static final class M37 {
+    }
+
+    public static final class M38 {
+    }
+
+    public static final class M39 {
+    }
+
+    public static final class M40 {
+    }
+
+    public static final class M41 {
+    }
+
+    public static final class M42 {
+    }
+
+    public static final class M43 {
+    }
+
+    public static final class M44 {
+    }
+
+    public static final class M45 {
+    }
+
+    public static final class M46 {
+    }
+
+    public static final class M47 {
+    }
+
+    public static final class M48 {
+    }
+
+    public static final class M49 {
+    }
+
+    public static final class Unmapped {
+    }
+
+    /**
+     * Makes a {@link Crashing} target throw an exception.
+     */
+    public static final class Crash {
+    }
+
+    static final Class<?>[] TYPES = {
+            M0.class, M1.class, M2.class, M3.class, M4.class, M5.class, M6.class, M7.class, M8.class, M9.class, M10.class, M11.class,
+            M12.class, M13.class, M14.class, M15.class, M16.class, M17.class, M18.class, M19.class, M20.class, M21.class, M22.class,
+            M23.class, M24.class, M25.class, M26.class, M27.class, M28.class, M29.class, M30.class, M31.class, M32.class, M33.class,
+            M34.class, M35.class, M36.class, M37.class, M38.class, M39.class, M40.class, M41.class, M42.class, M43.class, M44.class,
+            M45.class, M46.class, M47.class, M48.class, M49.class};
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.sawano.akka.japi.messagehandling.InvocationMode;
+import se.sawano.akka.japi.messagehandling.MethodDelegate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MethodDelegate#onReceive(Object)} for the same three message types declared as {@code Messages}, {@code Requests} and
+ * {@code Responses}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategoryBenchmark {
+
+    public enum Category {
+        MESSAGES, REQUESTS, RESPONSES
+    }
+
+    @Param({"MESSAGES", "REQUESTS", "RESPONSES"})
+    Category category;
+
+    @Param({"GENERATED", "METHOD_HANDLE"})
+    InvocationMode invocationMode;
+
+    private MethodDelegate delegate;
+    private Object[] messages;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        delegate = new MethodDelegate(targetFor(category), invocationMode);
+        messages = MessageMix.MEGAMORPHIC.messages(3);
+    }
+
+    private static Object targetFor(final Category category) {
+        switch (category) {
+            case REQUESTS:
+                return new RequestsTarget3();
+            case RESPONSES:
+                return new ResponsesTarget3();
+            default:
+                return new Target3();
+        }
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return delegate.onReceive(messages[index++ & (MessageMix.SIZE - 1)]);
+    }
+}
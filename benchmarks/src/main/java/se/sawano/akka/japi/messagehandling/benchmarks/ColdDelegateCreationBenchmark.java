@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.sawano.akka.japi.messagehandling.InvocationMode;
+import se.sawano.akka.japi.messagehandling.MethodDelegate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of creating the first {@link MethodDelegate} for a target class, i.e. a cold class. Every iteration gets a fresh copy of
+ * the target class, loaded by its own class loader, and creates a single delegate for it. This includes looking up a generated dispatcher
+ * or mapping the methods of the class. Hiding the generated dispatcher shows the cost of mapping a class that has none.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 100)
+@Fork(3)
+public class ColdDelegateCreationBenchmark {
+
+    @Param({"Target1", "Target3", "Target10", "Target50", "DeepTarget"})
+    String targetClass;
+
+    @Param({"GENERATED", "METHOD_HANDLE"})
+    InvocationMode invocationMode;
+
+    @Param({"true", "false"})
+    boolean withDispatcher;
+
+    private Object target;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        target = IsolatingClassLoader.coldCopyOf(Targets.benchmarkClass(targetClass), withDispatcher).newInstance();
+    }
+
+    @Benchmark
+    public MethodDelegate createDelegate() {
+        return new MethodDelegate(target, invocationMode);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.sawano.akka.japi.messagehandling.HandlerManifest;
+import se.sawano.akka.japi.messagehandling.InvocationMode;
+import se.sawano.akka.japi.messagehandling.MethodDelegate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of mapping all target classes of an application when it starts, with and without the {@link HandlerManifest} written
+ * by the Maven plugin. Every iteration gets fresh copies of the target classes of the benchmarks, loaded by a class loader of their own,
+ * and creates a delegate for each. Delegates are created in {@link InvocationMode#METHOD_HANDLE} mode, so that each class is mapped rather
+ * than dispatched to by its generated dispatcher. With the manifest, this includes reading it once for the class loader, which is only
+ * amortized over the few classes of the benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 100)
+@Fork(3)
+public class ColdStartBenchmark {
+
+    private static final List<Class<?>> TARGET_CLASSES = Arrays.<Class<?>>asList(Target1.class, Target3.class, Target10.class,
+                                                                                  Target50.class, DeepTarget.class, RequestsTarget3.class,
+                                                                                  ResponsesTarget3.class, CrashingTarget.class);
+
+    @Param({"true", "false"})
+    boolean withManifest;
+
+    private List<Object> targets;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        targets = new ArrayList<>();
+        for (final Class<?> targetClass : IsolatingClassLoader.coldCopiesOf(TARGET_CLASSES, withManifest)) {
+            targets.add(targetClass.newInstance());
+        }
+    }
+
+    @Benchmark
+    public List<MethodDelegate> createDelegates() {
+        final List<MethodDelegate> delegates = new ArrayList<>(targets.size());
+        for (final Object target : targets) {
+            delegates.add(new MethodDelegate(target, InvocationMode.METHOD_HANDLE));
+        }
+        return delegates;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import se.sawano.akka.japi.messagehandling.Messages;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Contract with 50 message receiving methods.
+ */
+public interface Contract50 extends Messages {
+
+    void on(M0 message);
+
+    void on(M1 message);
+
+    void on(M2 message);
+
+    void on(M3 message);
+
+    void on(M4 message);
+
+    void on(M5 message);
+
+    void on(M6 message);
+
+    void on(M7 message);
+
+    void on(M8 message);
+
+    void on(M9 message);
+
+    void on(M10 message);
+
+    void on(M11 message);
+
+    void on(M12 message);
+
+    void on(M13 message);
+
+    void on(M14 message);
+
+    void on(M15 message);
+
+    void on(M16 message);
+
+    void on(M17 message);
+
+    void on(M18 message);
+
+    void on(M19 message);
+
+    void on(M20 message);
+
+    void on(M21 message);
+
+    void on(M22 message);
+
+    void on(M23 message);
+
+    void on(M24 message);
+
+    void on(M25 message);
+
+    void on(M26 message);
+
+    void on(M27 message);
+
+    void on(M28 message);
+
+    void on(M29 message);
+
+    void on(M30 message);
+
+    void on(M31 message);
+
+    void on(M32 message);
+
+    void on(M33 message);
+
+    void on(M34 message);
+
+    void on(M35 message);
+
+    void on(M36 message);
+
+    void on(M37 message);
+
+    void on(M38 message);
+
+    void on(M39 message);
+
+    void on(M40 message);
+
+    void on(M41 message);
+
+    void on(M42 message);
+
+    void on(M43 message);
+
+    void on(M44 message);
+
+    void on(M45 message);
+
+    void on(M46 message);
+
+    void on(M47 message);
+
+    void on(M48 message);
+
+    void on(M49 message);
+}
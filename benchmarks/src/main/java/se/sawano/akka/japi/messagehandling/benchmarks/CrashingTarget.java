@@ -0,0 +1,30 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+/**
+ * Target implementing {@link Crashing} that always throws the same exception, so that only the cost of reporting the failure is measured.
+ */
+public final class CrashingTarget implements Crashing {
+
+    static final IllegalStateException FAILURE = new IllegalStateException("Crashing on request");
+
+    @Override
+    public void crash(final BenchmarkMessages.Crash message) {
+        throw FAILURE;
+    }
+}
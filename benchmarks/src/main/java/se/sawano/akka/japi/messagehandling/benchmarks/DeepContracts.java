@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import se.sawano.akka.japi.messagehandling.Messages;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * A contract that is declared through a hierarchy of ten interfaces, each adding one message receiving method.
+ */
+public final class DeepContracts {
+
+    private DeepContracts() {
+    }
+
+    public interface Level0 extends Messages {
+
+        void on(M0 message);
+    }
+
+    public interface Level1 extends Level0 {
+
+        void on(M1 message);
+    }
+
+    public interface Level2 extends Level1 {
+
+        void on(M2 message);
+    }
+
+    public interface Level3 extends Level2 {
+
+        void on(M3 message);
+    }
+
+    public interface Level4 extends Level3 {
+
+        void on(M4 message);
+    }
+
+    public interface Level5 extends Level4 {
+
+        void on(M5 message);
+    }
+
+    public interface Level6 extends Level5 {
+
+        void on(M6 message);
+    }
+
+    public interface Level7 extends Level6 {
+
+        void on(M7 message);
+    }
+
+    public interface Level8 extends Level7 {
+
+        void on(M8 message);
+    }
+
+    public interface Level9 extends Level8 {
+
+        void on(M9 message);
+    }
+}
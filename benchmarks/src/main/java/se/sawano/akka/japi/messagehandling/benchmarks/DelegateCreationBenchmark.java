@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.sawano.akka.japi.messagehandling.InvocationMode;
+import se.sawano.akka.japi.messagehandling.MethodDelegate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of creating a {@link MethodDelegate} for a target class that has been seen before, i.e. a warm class. See {@link
+ * ColdDelegateCreationBenchmark} for the first delegate of a class.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DelegateCreationBenchmark {
+
+    @Param({"Target1", "Target3", "Target10", "Target50", "DeepTarget"})
+    String targetClass;
+
+    @Param({"GENERATED", "METHOD_HANDLE"})
+    InvocationMode invocationMode;
+
+    private Object target;
+
+    @Setup
+    public void setUp() throws Exception {
+        target = Targets.benchmarkClass(targetClass).newInstance();
+    }
+
+    @Benchmark
+    public MethodDelegate createDelegate() {
+        return new MethodDelegate(target, invocationMode);
+    }
+}
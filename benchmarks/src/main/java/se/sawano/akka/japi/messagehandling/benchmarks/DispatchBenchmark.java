@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.sawano.akka.japi.messagehandling.InvocationMode;
+import se.sawano.akka.japi.messagehandling.MethodDelegate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MethodDelegate#onReceive(Object)} for messages that are handled by the target (hit) and messages that are not (miss).
+ * Compare with {@link HandWrittenBenchmark} for the cost of a hand written {@code onReceive}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"1", "3", "10", "50"})
+    int contractSize;
+
+    @Param({"GENERATED", "COMPILED", "METHOD_HANDLE", "REFLECTION"})
+    InvocationMode invocationMode;
+
+    @Param({"MONOMORPHIC", "MEGAMORPHIC"})
+    MessageMix messageMix;
+
+    private MethodDelegate delegate;
+    private Object[] messages;
+    private Object unmapped;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        delegate = new MethodDelegate(Targets.targetFor(contractSize), invocationMode);
+        messages = messageMix.messages(contractSize);
+        unmapped = new BenchmarkMessages.Unmapped();
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return delegate.onReceive(messages[index++ & (MessageMix.SIZE - 1)]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return delegate.onReceive(unmapped);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Hand written {@code instanceof} chain for the same 3 message types as {@link Target3}.
+ */
+public final class HandWritten3 implements HandWritten {
+
+    int received;
+
+    @Override
+    public boolean onReceive(final Object message) {
+        if (message instanceof M0) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M1) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M2) {
+            ++received;
+            return true;
+        }
+        return false;
+    }
+}
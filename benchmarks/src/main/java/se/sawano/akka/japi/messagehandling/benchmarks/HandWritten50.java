@@ -0,0 +1,232 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Hand written {@code instanceof} chain for the same 50 message types as {@link Target50}.
+ */
+public final class HandWritten50 implements HandWritten {
+
+    int received;
+
+    @Override
+    public boolean onReceive(final Object message) {
+        if (message instanceof M0) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M1) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M2) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M3) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M4) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M5) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M6) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M7) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M8) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M9) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M10) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M11) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M12) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M13) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M14) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M15) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M16) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M17) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M18) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M19) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M20) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M21) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M22) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M23) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M24) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M25) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M26) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M27) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M28) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M29) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M30) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M31) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M32) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M33) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M34) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M35) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M36) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M37) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M38) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M39) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M40) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M41) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M42) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M43) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M44) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M45) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M46) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M47) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M48) {
+            ++received;
+            return true;
+        }
+        if (message instanceof M49) {
+            ++received;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import se.sawano.akka.japi.messagehandling.HandlerManifest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Defines its own copy of a few given classes and delegates everything else to its parent. Used to get a class that has never been seen by
+ * the delegate before, i.e. a cold class. Classes can also be hidden, e.g. to get a class without a generated dispatcher, and so can the
+ * handler manifest of the benchmarks, to get a class that is mapped by scanning its methods.
+ */
+final class IsolatingClassLoader extends ClassLoader {
+
+    private final Set<String> isolatedClassNames;
+    private final Set<String> hiddenClassNames = new HashSet<>();
+    private boolean manifestHidden = true;
+
+    IsolatingClassLoader(final ClassLoader parent, final String... isolatedClassNames) {
+        super(parent);
+        this.isolatedClassNames = new HashSet<>(Arrays.asList(isolatedClassNames));
+    }
+
+    /**
+     * Loads a fresh copy of the given class, together with its generated dispatcher if it has one. The handler manifest is hidden.
+     *
+     * @param withDispatcher
+     *         if the generated dispatcher of the class should be visible, otherwise the class appears to have none
+     */
+    static Class<?> coldCopyOf(final Class<?> type, final boolean withDispatcher) throws ClassNotFoundException {
+        final String dispatcherName = type.getName() + se.sawano.akka.japi.messagehandling.GeneratedDispatcher.CLASS_NAME_SUFFIX;
+        final IsolatingClassLoader classLoader = new IsolatingClassLoader(type.getClassLoader(), type.getName(), dispatcherName);
+        if (!withDispatcher) {
+            classLoader.hiddenClassNames.add(dispatcherName);
+        }
+        return classLoader.loadClass(type.getName());
+    }
+
+    /**
+     * Loads fresh copies of the given classes with a single class loader. Generated dispatchers are not copied.
+     *
+     * @param withManifest
+     *         if the handler manifest of the benchmarks should be visible, otherwise the classes are not listed in any manifest
+     */
+    static List<Class<?>> coldCopiesOf(final List<Class<?>> types, final boolean withManifest) throws ClassNotFoundException {
+        final String[] classNames = new String[types.size()];
+        for (int i = 0; i < classNames.length; ++i) {
+            classNames[i] = types.get(i).getName();
+        }
+        final IsolatingClassLoader classLoader = new IsolatingClassLoader(types.get(0).getClassLoader(), classNames);
+        classLoader.manifestHidden = !withManifest;
+        final List<Class<?>> copies = new ArrayList<>(classNames.length);
+        for (final String className : classNames) {
+            copies.add(classLoader.loadClass(className));
+        }
+        return copies;
+    }
+
+    @Override
+    public Enumeration<URL> getResources(final String name) throws IOException {
+        if (manifestHidden && HandlerManifest.RESOURCE_NAME.equals(name)) {
+            return Collections.emptyEnumeration();
+        }
+        return super.getResources(name);
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+        if (hiddenClassNames.contains(name)) {
+            throw new ClassNotFoundException(name);
+        }
+        if (!isolatedClassNames.contains(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> type = findLoadedClass(name);
+            if (type == null) {
+                final byte[] bytes = bytesOf(name);
+                type = defineClass(name, bytes, 0, bytes.length);
+            }
+            if (resolve) {
+                resolveClass(type);
+            }
+            return type;
+        }
+    }
+
+    private byte[] bytesOf(final String name) throws ClassNotFoundException {
+        try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+            if (in == null) {
+                throw new ClassNotFoundException(name);
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+/**
+ * The sequence of message types a benchmark target receives.
+ */
+public enum MessageMix {
+
+    /**
+     * All messages are of the same type.
+     */
+    MONOMORPHIC {
+        @Override
+        Class<?> typeAt(final int index, final int contractSize) {
+            return BenchmarkMessages.TYPES[0];
+        }
+    },
+
+    /**
+     * Messages cycle through all types handled by the target.
+     */
+    MEGAMORPHIC {
+        @Override
+        Class<?> typeAt(final int index, final int contractSize) {
+            return BenchmarkMessages.TYPES[index % contractSize];
+        }
+    };
+
+    /**
+     * Number of messages in a sequence, must be a power of two.
+     */
+    static final int SIZE = 1024;
+
+    abstract Class<?> typeAt(int index, int contractSize);
+
+    /**
+     * @return {@value #SIZE} messages of the types given by this mix
+     */
+    Object[] messages(final int contractSize) {
+        final Object[] messages = new Object[SIZE];
+        for (int i = 0; i < SIZE; ++i) {
+            try {
+                messages[i] = typeAt(i, contractSize).newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return messages;
+    }
+}
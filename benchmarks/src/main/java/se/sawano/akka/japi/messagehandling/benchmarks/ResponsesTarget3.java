@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Target implementing {@link ResponsesContract3}.
+ */
+public final class ResponsesTarget3 implements ResponsesContract3 {
+
+    int received;
+
+    @Override
+    public void on(M0 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M1 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M2 message) {
+        ++received;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Target implementing {@link Contract50}.
+ */
+public final class Target50 implements Contract50 {
+
+    int received;
+
+    @Override
+    public void on(M0 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M1 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M2 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M3 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M4 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M5 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M6 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M7 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M8 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M9 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M10 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M11 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M12 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M13 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M14 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M15 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M16 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M17 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M18 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M19 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M20 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M21 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M22 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M23 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M24 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M25 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M26 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M27 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M28 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M29 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M30 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M31 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M32 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M33 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M34 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M35 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M36 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M37 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M38 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M39 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M40 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M41 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M42 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M43 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M44 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M45 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M46 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M47 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M48 message) {
+        ++received;
+    }
+
+    @Override
+    public void on(M49 message) {
+        ++received;
+    }
+}
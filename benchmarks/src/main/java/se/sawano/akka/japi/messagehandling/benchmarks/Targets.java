@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+/**
+ * Creates benchmark targets by contract size.
+ */
+final class Targets {
+
+    private Targets() {
+    }
+
+    static Object targetFor(final int contractSize) {
+        switch (contractSize) {
+            case 1:
+                return new Target1();
+            case 3:
+                return new Target3();
+            case 10:
+                return new Target10();
+            case 50:
+                return new Target50();
+            default:
+                throw new IllegalArgumentException("No target with contract size: " + contractSize);
+        }
+    }
+
+    /**
+     * @return the class with the given simple name in the benchmarks package
+     */
+    static Class<?> benchmarkClass(final String simpleName) throws ClassNotFoundException {
+        return Class.forName(Targets.class.getPackage().getName() + "." + simpleName);
+    }
+
+    static HandWritten handWrittenFor(final int contractSize) {
+        switch (contractSize) {
+            case 1:
+                return new HandWritten1();
+            case 3:
+                return new HandWritten3();
+            case 10:
+                return new HandWritten10();
+            case 50:
+                return new HandWritten50();
+            default:
+                throw new IllegalArgumentException("No hand written target with contract size: " + contractSize);
+        }
+    }
+}
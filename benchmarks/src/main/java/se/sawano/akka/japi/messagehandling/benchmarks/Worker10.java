@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Actor implementing {@link Contract10}.
+ */
+public final class Worker10 extends ReplyingActor implements Contract10, Crashing {
+
+    @Override
+    public void on(M0 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M1 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M2 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M3 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M4 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M5 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M6 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M7 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M8 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M9 message) {
+        reply(message);
+    }
+
+    @Override
+    public void crash(Crash message) {
+        throw new IllegalStateException("Crashing on request");
+    }
+}
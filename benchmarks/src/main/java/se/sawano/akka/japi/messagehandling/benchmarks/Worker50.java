@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.benchmarks;
+
+import static se.sawano.akka.japi.messagehandling.benchmarks.BenchmarkMessages.*;
+
+/**
+ * Actor implementing {@link Contract50}.
+ */
+public final class Worker50 extends ReplyingActor implements Contract50, Crashing {
+
+    @Override
+    public void on(M0 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M1 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M2 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M3 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M4 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M5 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M6 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M7 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M8 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M9 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M10 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M11 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M12 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M13 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M14 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M15 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M16 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M17 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M18 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M19 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M20 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M21 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M22 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M23 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M24 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M25 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M26 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M27 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M28 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M29 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M30 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M31 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M32 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M33 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M34 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M35 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M36 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M37 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M38 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M39 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M40 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M41 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M42 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M43 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M44 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M45 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M46 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M47 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M48 message) {
+        reply(message);
+    }
+
+    @Override
+    public void on(M49 message) {
+        reply(message);
+    }
+
+    @Override
+    public void crash(Crash message) {
+        throw new IllegalStateException("Crashing on request");
+    }
+}
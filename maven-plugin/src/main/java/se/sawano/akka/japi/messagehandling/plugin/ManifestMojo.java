@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.plugin;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes the handler manifest of the compiled classes of a project, so that their handler mappings are read from the manifest at runtime
+ * instead of being resolved by scanning the classes. Every class that can be the target of a {@code MethodDelegate} is mapped exactly as it
+ * would be at runtime, so a class that cannot be mapped fails the build. Run the goal in {@code process-classes}, its default phase, e.g.
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;se.sawano.akka.japi&lt;/groupId&gt;
+ *   &lt;artifactId&gt;akka-message-java-maven-plugin&lt;/artifactId&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;goals&gt;&lt;goal&gt;manifest&lt;/goal&gt;&lt;/goals&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;</pre>
+ * <p>
+ * The classes are loaded, without being initialized, by a class loader of their own over the compile class path. The manifest is written by
+ * the {@code akka-message-java} on that class path, so it always has the format that the project reads at runtime. No manifest is written
+ * if the project has no target classes.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@Mojo(name = "manifest", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = ResolutionScope.COMPILE,
+      threadSafe = true)
+public class ManifestMojo extends AbstractMojo {
+
+    private static final String MANIFEST_CLASS_NAME = "se.sawano.akka.japi.messagehandling.HandlerManifest";
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * The directory of the classes to write the manifest of. The manifest is written to this directory.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    File classesDirectory;
+
+    /**
+     * The class path to load the classes with. It must contain {@code akka-message-java}.
+     */
+    @Parameter(defaultValue = "${project.compileClasspathElements}", readonly = true, required = true)
+    List<String> classpathElements;
+
+    /**
+     * Skips writing the manifest.
+     */
+    @Parameter(property = "akka-message-java.manifest.skip", defaultValue = "false")
+    boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping handler manifest");
+            return;
+        }
+        if (!classesDirectory.isDirectory()) {
+            getLog().info("No classes to write a handler manifest of");
+            return;
+        }
+        final List<String> classNames = new ArrayList<>();
+        addClassNames(classesDirectory, "", classNames);
+        Collections.sort(classNames);
+
+        try (URLClassLoader classLoader = new URLClassLoader(classPath(), ClassLoader.getSystemClassLoader().getParent())) {
+            final Class<?> manifestClass = manifestClassOf(classLoader);
+            final File manifest = new File(classesDirectory, (String) manifestClass.getField("RESOURCE_NAME").get(null));
+            // A manifest left by an earlier build would list classes that may have changed or been removed since
+            if (manifest.exists() && !manifest.delete()) {
+                throw new MojoExecutionException("Unable to delete handler manifest: " + manifest);
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final int numberOfTargets = write(manifestClass, classNames, classLoader, out);
+            if (numberOfTargets == 0) {
+                getLog().info("No target classes to write a handler manifest of");
+                return;
+            }
+            writeFile(manifest, out.toByteArray());
+            getLog().info("Wrote handler manifest of " + numberOfTargets + " target classes to " + manifest);
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new MojoExecutionException("Unable to write handler manifest of " + classesDirectory, e);
+        }
+    }
+
+    private static void addClassNames(final File directory, final String packagePrefix, final List<String> classNames) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            final String name = file.getName();
+            if (file.isDirectory()) {
+                addClassNames(file, packagePrefix + name + '.', classNames);
+            }
+            else if (name.endsWith(CLASS_SUFFIX)) {
+                classNames.add(packagePrefix + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+            }
+        }
+    }
+
+    /**
+     * The classes directory is first on the class path, so its classes are the ones mapped even if the class path has other copies of them.
+     */
+    private URL[] classPath() throws MalformedURLException {
+        final List<URL> urls = new ArrayList<>();
+        urls.add(classesDirectory.toURI().toURL());
+        for (final String element : classpathElements) {
+            final File file = new File(element);
+            if (!file.equals(classesDirectory)) {
+                urls.add(file.toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    private static Class<?> manifestClassOf(final ClassLoader classLoader) throws MojoExecutionException {
+        try {
+            return Class.forName(MANIFEST_CLASS_NAME, true, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new MojoExecutionException("Found no " + MANIFEST_CLASS_NAME + " on the compile class path. Add akka-message-java " +
+                                             "0.0.2 or later as a dependency of the project.", e);
+        }
+    }
+
+    private static int write(final Class<?> manifestClass, final List<String> classNames, final ClassLoader classLoader,
+                             final OutputStream out) throws ReflectiveOperationException, MojoFailureException {
+        final Method write = manifestClass.getMethod("write", Iterable.class, ClassLoader.class, OutputStream.class);
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return (Integer) write.invoke(null, classNames, classLoader, out);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IllegalArgumentException || e.getCause() instanceof IllegalStateException) {
+                throw new MojoFailureException("Unable to map target class: " + e.getCause().getMessage(), e.getCause());
+            }
+            throw e;
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    private static void writeFile(final File file, final byte[] bytes) throws IOException {
+        final File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory: " + directory);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.plugin;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.sawano.akka.japi.messagehandling.HandlerManifest;
+import se.sawano.akka.japi.messagehandling.predef.Messages1;
+import se.sawano.akka.japi.messagehandling.predef.Requests1;
+import se.sawano.akka.japi.messagehandling.predef.Responses1;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ManifestMojoTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    ManifestMojo mojo;
+    File manifest;
+
+    @Before
+    public void setUp() throws Exception {
+        mojo = new ManifestMojo();
+        mojo.classesDirectory = folder.getRoot();
+        mojo.classpathElements = Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator));
+        manifest = new File(folder.getRoot(), HandlerManifest.RESOURCE_NAME);
+    }
+
+    @Test
+    public void shouldWriteManifestOfTargetClasses() throws Exception {
+        givenClasses(SampleTarget.class, NotATarget.class);
+
+        mojo.execute();
+
+        final String contents = new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8);
+        assertTrue(contents.contains(SampleTarget.class.getName()));
+        assertFalse(contents.contains(NotATarget.class.getName()));
+    }
+
+    @Test
+    public void shouldRemoveManifestOfEarlierBuildIfThereAreNoTargets() throws Exception {
+        givenClasses(NotATarget.class);
+        assertTrue(manifest.getParentFile().mkdirs());
+        assertTrue(manifest.createNewFile());
+
+        mojo.execute();
+
+        assertFalse(manifest.exists());
+    }
+
+    @Test
+    public void shouldFailIfTargetCannotBeMapped() throws Exception {
+        givenClasses(SampleTarget.class, ClashingTarget.class);
+
+        try {
+            mojo.execute();
+            fail("Expected exception");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage().contains(ClashingTarget.class.getName()));
+        }
+        assertFalse(manifest.exists());
+    }
+
+    @Test
+    public void shouldNotWriteManifestIfSkipped() throws Exception {
+        givenClasses(SampleTarget.class);
+        mojo.skip = true;
+
+        mojo.execute();
+
+        assertFalse(manifest.exists());
+    }
+
+    private void givenClasses(final Class<?>... classes) throws Exception {
+        for (final Class<?> type : classes) {
+            final String resourceName = type.getName().replace('.', '/') + ".class";
+            final File file = new File(folder.getRoot(), resourceName);
+            assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            try (InputStream in = type.getClassLoader().getResourceAsStream(resourceName)) {
+                Files.copy(in, file.toPath());
+            }
+        }
+    }
+
+    public static final class SampleTarget implements Messages1<String> {
+        @Override
+        public void onMessage(final String message) {
+        }
+    }
+
+    public static final class ClashingTarget implements Requests1<String>, Responses1<String> {
+        @Override
+        public void onRequest(final String request) {
+        }
+
+        @Override
+        public void onResponse(final String response) {
+        }
+    }
+
+    public static final class NotATarget {
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.processor;
+
+import se.sawano.akka.japi.messagehandling.Batch;
+import se.sawano.akka.japi.messagehandling.Blocking;
+import se.sawano.akka.japi.messagehandling.ContractClient;
+import se.sawano.akka.japi.messagehandling.GeneratedDispatcher;
+import se.sawano.akka.japi.messagehandling.Messages;
+import se.sawano.akka.japi.messagehandling.Requests;
+import se.sawano.akka.japi.messagehandling.Responses;
+import se.sawano.akka.japi.messagehandling.Stateless;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Generates a {@link GeneratedDispatcher} for every concrete class that implements an interface extending {@link Messages}, {@link Requests}
+ * or {@link Responses}. The mapping from message types to methods follows the same rules as the runtime mapping done by {@code
+ * MethodDelegate}, and mapping errors, such as a message type being mapped more than once, are reported as compilation errors.
+ * <p>
+ * {@link Batch} methods are mapped to the element type of their list parameter. They, request methods that reply with their return value,
+ * e.g. a {@link CompletionStage}, and {@link Blocking} or {@link Stateless} methods are not dispatched to by the generated dispatcher.
+ * Messages for them are left to the runtime mapping, which collects them into batches, replies or invokes them on their dispatcher.
+ * </p>
+ * <p>
+ * A {@link ContractClient} is also generated for every interface extending {@link Messages}, {@link Requests} or {@link Responses}, as long
+ * as all of its methods return {@code void} or a {@link CompletionStage}.
+ * </p>
+ * <p>
+ * The processor is registered as a service and is picked up by the compiler as soon as this artifact is on the compile class path.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@SupportedAnnotationTypes("*")
+public class DispatcherProcessor extends AbstractProcessor {
+
+    private static final Class<?>[] CONTRACTS = {Requests.class, Responses.class, Messages.class};
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final List<TypeMirror> contracts = contractTypes();
+        if (contracts.isEmpty()) {
+            return false;
+        }
+        for (final TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            processType(type, contracts);
+        }
+        return false;
+    }
+
+    private List<TypeMirror> contractTypes() {
+        final List<TypeMirror> contracts = new ArrayList<>();
+        for (final Class<?> contract : CONTRACTS) {
+            final TypeElement element = processingEnv.getElementUtils().getTypeElement(contract.getCanonicalName());
+            if (element != null) {
+                contracts.add(element.asType());
+            }
+        }
+        return contracts;
+    }
+
+    private void processType(final TypeElement type, final List<TypeMirror> contracts) {
+        for (final TypeElement memberType : ElementFilter.typesIn(type.getEnclosedElements())) {
+            processType(memberType, contracts);
+        }
+        if (isClientCandidate(type, contracts)) {
+            processContract(type);
+        }
+        if (!isDispatcherCandidate(type)) {
+            return;
+        }
+        final List<DeclaredType> contractInterfaces = contractInterfacesOf(type, contracts);
+        if (contractInterfaces.isEmpty()) {
+            return;
+        }
+        final Map<String, Handler> handlers = new LinkedHashMap<>();
+        for (final DeclaredType contractInterface : contractInterfaces) {
+            if (!addHandlers(type, contractInterface, handlers)) {
+                return;
+            }
+        }
+        if (isAccessible(type) && allAccessible(handlers)) {
+            writeDispatcher(type, handlers);
+        }
+        else {
+            note("No dispatcher generated for " + type + " since it, or one of its message types, is private", type);
+        }
+    }
+
+    /**
+     * Clients implement contract interfaces too, but only to send messages.
+     */
+    private boolean isDispatcherCandidate(final TypeElement type) {
+        return type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT) && (type.getNestingKind() ==
+                NestingKind.TOP_LEVEL || type.getNestingKind() == NestingKind.MEMBER) && !processingEnv.getTypeUtils().isSubtype(
+                type.asType(), typeOf(ContractClient.class));
+    }
+
+    private boolean isClientCandidate(final TypeElement type, final List<TypeMirror> contracts) {
+        if (type.getKind() != ElementKind.INTERFACE || !isAccessible(type) || (type.getNestingKind() != NestingKind.TOP_LEVEL && type
+                .getNestingKind() != NestingKind.MEMBER)) {
+            return false;
+        }
+        for (final TypeMirror contract : contracts) {
+            if (processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(type.asType()), contract)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void processContract(final TypeElement type) {
+        final DeclaredType interfaceType = (DeclaredType) type.asType();
+        final List<ClientMethod> methods = new ArrayList<>();
+        final Set<String> seen = new HashSet<>();
+        for (final ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE || method.getModifiers().contains(Modifier.STATIC) ||
+                method.getModifiers().contains(Modifier.DEFAULT)) {
+                continue;
+            }
+            final ExecutableType methodType = (ExecutableType) processingEnv.getTypeUtils().asMemberOf(interfaceType, method);
+            if (methodType.getParameterTypes().size() != 1) {
+                note("No client generated for " + type + " since " + method + " does not have exactly one (1) parameter", type);
+                return;
+            }
+            final TypeMirror parameterType = methodType.getParameterTypes().get(0);
+            if (!seen.add(method.getSimpleName() + "(" + processingEnv.getTypeUtils().erasure(parameterType) + ")")) {
+                continue;
+            }
+            final String send = sendOf(method, methodType.getReturnType());
+            if (send == null) {
+                note("No client generated for " + type + " since " + method + " neither returns void nor a CompletionStage", type);
+                return;
+            }
+            methods.add(new ClientMethod(method.getSimpleName().toString(), parameterType, methodType.getReturnType(), send));
+        }
+        if (!methods.isEmpty()) {
+            writeClient(type, methods);
+        }
+    }
+
+    /**
+     * @return the method of {@link ContractClient} that sends the argument of the given method, or {@code null} if there is none
+     */
+    private String sendOf(final ExecutableElement method, final TypeMirror returnType) {
+        if (method.getAnnotation(Batch.class) != null) {
+            return returnType.getKind() == TypeKind.VOID ? "tellEach" : null;
+        }
+        if (returnType.getKind() == TypeKind.VOID) {
+            return "tell";
+        }
+        if (returnType.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        final TypeMirror erasure = processingEnv.getTypeUtils().erasure(returnType);
+        final boolean askable = processingEnv.getTypeUtils().isSubtype(erasure, typeOf(CompletionStage.class))
+                                && processingEnv.getTypeUtils().isAssignable(typeOf(CompletableFuture.class), erasure);
+        return askable ? "ask" : null;
+    }
+
+    /**
+     * Only interfaces that are directly implemented are considered, just as in the runtime mapping.
+     */
+    private List<DeclaredType> contractInterfacesOf(final TypeElement type, final List<TypeMirror> contracts) {
+        final List<DeclaredType> contractInterfaces = new ArrayList<>();
+        for (final TypeMirror interfaceType : type.getInterfaces()) {
+            for (final TypeMirror contract : contracts) {
+                if (processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(interfaceType), contract)) {
+                    contractInterfaces.add((DeclaredType) interfaceType);
+                    break;
+                }
+            }
+        }
+        return contractInterfaces;
+    }
+
+    private boolean addHandlers(final TypeElement type, final DeclaredType contractInterface, final Map<String, Handler> handlers) {
+        final TypeElement interfaceElement = (TypeElement) contractInterface.asElement();
+        final boolean requests = processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(contractInterface), typeOf(
+                Requests.class));
+        final Set<String> seen = new HashSet<>();
+        for (final ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(interfaceElement))) {
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            final ExecutableType methodType = (ExecutableType) processingEnv.getTypeUtils().asMemberOf(contractInterface, method);
+            if (methodType.getParameterTypes().size() != 1) {
+                return error("Method must have exactly one (1) parameter. Found " + methodType.getParameterTypes().size() + " in " +
+                             method, type);
+            }
+            final TypeMirror parameterType = processingEnv.getTypeUtils().erasure(methodType.getParameterTypes().get(0));
+            final String methodName = method.getSimpleName().toString();
+            if (!seen.add(methodName + "(" + parameterType + ")")) {
+                continue;
+            }
+            if (!declaresTargetMethod(type, method, parameterType)) {
+                return false;
+            }
+            final Batch batchAnnotation = method.getAnnotation(Batch.class);
+            final boolean batch = batchAnnotation != null;
+            if (batch && batchAnnotation.maxSize() < 1) {
+                return error("Maximum batch size must be at least one (1). Found " + batchAnnotation.maxSize() + " in " + method, type);
+            }
+            final TypeMirror returnType = methodType.getReturnType();
+            final boolean async = returnType.getKind() == TypeKind.DECLARED && processingEnv.getTypeUtils().isSubtype(
+                    processingEnv.getTypeUtils().erasure(returnType), typeOf(CompletionStage.class));
+            if (async && (!requests || batch)) {
+                return error("Only request methods that are not batch methods can return a CompletionStage: " + method, type);
+            }
+            final boolean replying = requests && !batch && returnType.getKind() != TypeKind.VOID;
+            final boolean blocking = method.getAnnotation(Blocking.class) != null;
+            final boolean stateless = method.getAnnotation(Stateless.class) != null;
+            if (blocking && stateless) {
+                return error("A method cannot be both blocking and stateless: " + method, type);
+            }
+            final boolean offloaded = blocking || stateless;
+            if (offloaded && (batch || async)) {
+                return error("Blocking and stateless methods can neither be batch methods nor return a CompletionStage: " + method, type);
+            }
+            final TypeMirror messageType = batch ? elementTypeOf(methodType.getParameterTypes().get(0), method, type) : parameterType;
+            if (messageType == null) {
+                return false;
+            }
+            final String messageTypeName = messageType.toString();
+            if (handlers.containsKey(messageTypeName)) {
+                return error("Message type: " + messageTypeName + " already mapped in target class: " + type + ". Can only be mapped once.",
+                             type);
+            }
+            handlers.put(messageTypeName, new Handler(methodName, messageType, batch, replying, offloaded));
+        }
+        return true;
+    }
+
+    private TypeMirror typeOf(final Class<?> type) {
+        return processingEnv.getTypeUtils().erasure(processingEnv.getElementUtils().getTypeElement(type.getCanonicalName()).asType());
+    }
+
+    private TypeMirror elementTypeOf(final TypeMirror parameterType, final ExecutableElement method, final TypeElement type) {
+        final TypeMirror listType = typeOf(List.class);
+        if (parameterType.getKind() != TypeKind.DECLARED || !processingEnv.getTypeUtils().isSameType(processingEnv.getTypeUtils().erasure(
+                parameterType), listType) || ((DeclaredType) parameterType).getTypeArguments().size() != 1) {
+            error("Batch method must have a parameter of type List<T>. Found " + parameterType + " in " + method, type);
+            return null;
+        }
+        final TypeMirror elementType = ((DeclaredType) parameterType).getTypeArguments().get(0);
+        if (elementType.getKind() != TypeKind.DECLARED) {
+            error("Unable to determine message type of batch method: " + method, type);
+            return null;
+        }
+        return processingEnv.getTypeUtils().erasure(elementType);
+    }
+
+    /**
+     * The target method must be declared by the target class itself since the runtime mapping only looks at declared methods.
+     */
+    private boolean declaresTargetMethod(final TypeElement type, final ExecutableElement interfaceMethod, final TypeMirror messageType) {
+        final boolean genericInterfaceMethod = interfaceMethod.getParameters().get(0).asType().getKind() == TypeKind.TYPEVAR;
+        ExecutableElement found = null;
+        for (final ExecutableElement targetMethod : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (isSimilar(targetMethod, interfaceMethod, messageType, genericInterfaceMethod)) {
+                if (found != null) {
+                    return error("Found multiple matching methods: " + found + " and " + targetMethod, type);
+                }
+                found = targetMethod;
+            }
+        }
+        if (found == null) {
+            return error("Unable to find target method on delegate for method: " + interfaceMethod, type);
+        }
+        return true;
+    }
+
+    private boolean isSimilar(final ExecutableElement targetMethod, final ExecutableElement interfaceMethod, final TypeMirror messageType,
+                              final boolean genericInterfaceMethod) {
+        if (!targetMethod.getSimpleName().equals(interfaceMethod.getSimpleName()) || targetMethod.getParameters().size() != 1) {
+            return false;
+        }
+        final TypeMirror parameterType = targetMethod.getParameters().get(0).asType();
+        if (genericInterfaceMethod) {
+            return parameterType.getKind() != TypeKind.TYPEVAR && !processingEnv.getTypeUtils().isSameType(
+                    processingEnv.getTypeUtils().erasure(parameterType), objectType());
+        }
+        return processingEnv.getTypeUtils().isSameType(processingEnv.getTypeUtils().erasure(parameterType), messageType);
+    }
+
+    private TypeMirror objectType() {
+        return processingEnv.getElementUtils().getTypeElement(Object.class.getName()).asType();
+    }
+
+    private boolean allAccessible(final Map<String, Handler> handlers) {
+        for (final Handler handler : handlers.values()) {
+            final TypeMirror type = handler.messageType;
+            if (type.getKind() == TypeKind.DECLARED && !isAccessible(((DeclaredType) type).asElement())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAccessible(final Element element) {
+        for (Element e = element; e != null && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeDispatcher(final TypeElement type, final Map<String, Handler> handlers) {
+        final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        final String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + GeneratedDispatcher
+                .CLASS_NAME_SUFFIX;
+        final String targetTypeName = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(binaryName + GeneratedDispatcher.CLASS_NAME_SUFFIX, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Dispatcher for {@link " + targetTypeName + "}. Generated by " + getClass().getName() + ", do not edit.");
+                out.println(" */");
+                out.println("public final class " + simpleName + " implements " + GeneratedDispatcher.class.getName() + " {");
+                out.println();
+                out.println("    @Override");
+                out.println("    @SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+                out.println("    public boolean dispatch(final Object target, final Object message) throws Exception {");
+                out.println("        final Class<?> messageClass = message.getClass();");
+                boolean batchHandlers = false;
+                boolean replyingHandlers = false;
+                boolean offloadedHandlers = false;
+                for (final Handler handler : handlers.values()) {
+                    batchHandlers |= handler.batch;
+                    replyingHandlers |= handler.replying;
+                    offloadedHandlers |= handler.offloaded;
+                    if (handler.messageType.getKind().isPrimitive() || handler.batch || handler.replying || handler.offloaded) {
+                        continue;
+                    }
+                    out.println("        if (messageClass == " + handler.messageType + ".class) {");
+                    out.println("            ((" + targetTypeName + ") target)." + handler.methodName + "((" + handler.messageType + ") message);");
+                    out.println("            return true;");
+                    out.println("        }");
+                }
+                out.println("        return false;");
+                out.println("    }");
+                if (batchHandlers) {
+                    writeTrueMethod(out, "hasBatchHandlers");
+                }
+                if (replyingHandlers) {
+                    writeTrueMethod(out, "hasReplyingHandlers");
+                }
+                if (offloadedHandlers) {
+                    writeTrueMethod(out, "hasOffloadedHandlers");
+                }
+                out.println("}");
+            }
+        } catch (IOException e) {
+            error("Unable to write dispatcher for " + type + ": " + e.getMessage(), type);
+        }
+    }
+
+    private void writeClient(final TypeElement type, final List<ClientMethod> methods) {
+        final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        final String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + ContractClient
+                .CLASS_NAME_SUFFIX;
+        final String typeParameters = typeParametersOf(type);
+
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(binaryName + ContractClient.CLASS_NAME_SUFFIX, type);
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                if (!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("/**");
+                out.println(" * Client for {@link " + processingEnv.getTypeUtils().erasure(type.asType()) + "}. Generated by " + getClass()
+                        .getName() + ", do not edit.");
+                out.println(" */");
+                out.println("public final class " + simpleName + typeParameters + " extends " + ContractClient.class.getName() +
+                            " implements " + type.asType() + " {");
+                out.println();
+                out.println("    public " + simpleName + "(final akka.actor.ActorRef target, final akka.actor.ActorRef sender, " +
+                            "final akka.util.Timeout askTimeout) {");
+                out.println("        super(target, sender, askTimeout);");
+                out.println("    }");
+                for (final ClientMethod method : methods) {
+                    out.println();
+                    out.println("    @Override");
+                    out.println("    public " + method.returnType + " " + method.methodName + "(final " + method.parameterType + " message) {");
+                    out.println("        " + (method.returnType.getKind() == TypeKind.VOID ? "" : "return ") + method.send + "(message);");
+                    out.println("    }");
+                }
+                out.println("}");
+            }
+        } catch (IOException e) {
+            error("Unable to write client for " + type + ": " + e.getMessage(), type);
+        }
+    }
+
+    private String typeParametersOf(final TypeElement type) {
+        if (type.getTypeParameters().isEmpty()) {
+            return "";
+        }
+        final StringBuilder typeParameters = new StringBuilder("<");
+        for (final TypeParameterElement typeParameter : type.getTypeParameters()) {
+            if (typeParameters.length() > 1) {
+                typeParameters.append(", ");
+            }
+            typeParameters.append(typeParameter.getSimpleName());
+            String separator = " extends ";
+            for (final TypeMirror bound : typeParameter.getBounds()) {
+                if (!processingEnv.getTypeUtils().isSameType(bound, objectType())) {
+                    typeParameters.append(separator).append(bound);
+                    separator = " & ";
+                }
+            }
+        }
+        return typeParameters.append('>').toString();
+    }
+
+    private static void writeTrueMethod(final PrintWriter out, final String methodName) {
+        out.println();
+        out.println("    @Override");
+        out.println("    public boolean " + methodName + "() {");
+        out.println("        return true;");
+        out.println("    }");
+    }
+
+    private boolean error(final String message, final Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+
+    private void note(final String message, final Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    private static final class ClientMethod {
+        private final String methodName;
+        private final TypeMirror parameterType;
+        private final TypeMirror returnType;
+        private final String send;
+
+        private ClientMethod(final String methodName, final TypeMirror parameterType, final TypeMirror returnType, final String send) {
+            this.methodName = methodName;
+            this.parameterType = parameterType;
+            this.returnType = returnType;
+            this.send = send;
+        }
+    }
+
+    private static final class Handler {
+        private final String methodName;
+        private final TypeMirror messageType;
+        private final boolean batch;
+        private final boolean replying;
+        private final boolean offloaded;
+
+        private Handler(final String methodName, final TypeMirror messageType, final boolean batch, final boolean replying,
+                        final boolean offloaded) {
+            this.methodName = methodName;
+            this.messageType = messageType;
+            this.batch = batch;
+            this.replying = replying;
+            this.offloaded = offloaded;
+        }
+    }
+}
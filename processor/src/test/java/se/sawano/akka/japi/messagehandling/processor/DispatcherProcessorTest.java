@@ -0,0 +1,439 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling.processor;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import net.jcip.annotations.ThreadSafe;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.sawano.akka.japi.messagehandling.ContractClients;
+import se.sawano.akka.japi.messagehandling.GeneratedDispatcher;
+import se.sawano.akka.japi.messagehandling.InvocationMode;
+import se.sawano.akka.japi.messagehandling.Messages;
+import se.sawano.akka.japi.messagehandling.MethodDelegate;
+import scala.Option;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DispatcherProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+    private File classes;
+    private URLClassLoader classLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        diagnostics = new DiagnosticCollector<>();
+        classes = folder.newFolder("classes");
+    }
+
+    @Test
+    public void shouldGenerateDispatcherForPredefinedInterfaces() throws Exception {
+        assertTrue(compile(source("example.Acker",
+                                  "package example;",
+                                  "public class Acker implements se.sawano.akka.japi.messagehandling.predef.Requests2<Short, Float>,",
+                                  "        se.sawano.akka.japi.messagehandling.predef.Responses1<Integer> {",
+                                  "    public final StringBuilder received = new StringBuilder();",
+                                  "    public void onRequest(Float request) { received.append(\"onRequest \"); }",
+                                  "    public void onRequest2(Short request) { received.append(\"onRequest2 \"); }",
+                                  "    public void onResponse(Integer response) { received.append(\"onResponse \"); }",
+                                  "}")));
+
+        final Object target = load("example.Acker").newInstance();
+        final GeneratedDispatcher dispatcher = (GeneratedDispatcher) load("example.Acker_Dispatcher").newInstance();
+
+        assertTrue(dispatcher.dispatch(target, 1f));
+        assertTrue(dispatcher.dispatch(target, (short) 1));
+        assertTrue(dispatcher.dispatch(target, 1));
+        assertFalse(dispatcher.dispatch(target, "not mapped"));
+        assertEquals("onRequest onRequest2 onResponse ", receivedBy(target));
+    }
+
+    @Test
+    public void shouldBeUsedByMethodDelegateInGeneratedMode() throws Exception {
+        assertTrue(compile(source("example.Caller",
+                                  "package example;",
+                                  "public class Caller implements se.sawano.akka.japi.messagehandling.predef.Messages1<String> {",
+                                  "    public final StringBuilder received = new StringBuilder();",
+                                  "    public void onMessage(String message) {",
+                                  "        received.append(new Throwable().getStackTrace()[1].getClassName()).append(' ');",
+                                  "    }",
+                                  "}")));
+
+        final Object target = load("example.Caller").newInstance();
+
+        assertTrue(new MethodDelegate(target, InvocationMode.GENERATED).onReceive("a string"));
+        assertEquals("example.Caller_Dispatcher ", receivedBy(target));
+    }
+
+    @Test
+    public void shouldGenerateDispatcherForNestedClassWithCustomInterface() throws Exception {
+        assertTrue(compile(source("example.Outer",
+                                  "package example;",
+                                  "public class Outer {",
+                                  "    public interface Contract extends se.sawano.akka.japi.messagehandling.Messages {",
+                                  "        void onMessage(String message);",
+                                  "        void onMessage(Long message);",
+                                  "    }",
+                                  "    public static class Inner implements Contract {",
+                                  "        public final StringBuilder received = new StringBuilder();",
+                                  "        public void onMessage(String message) { received.append(\"String \"); }",
+                                  "        public void onMessage(Long message) { received.append(\"Long \"); }",
+                                  "    }",
+                                  "}")));
+
+        final Object target = load("example.Outer$Inner").newInstance();
+        final MethodDelegate delegate = new MethodDelegate(target);
+
+        assertTrue(delegate.onReceive("a string"));
+        assertTrue(delegate.onReceive(1L));
+        assertFalse(delegate.onReceive(1));
+        assertEquals("String Long ", receivedBy(target));
+        assertNotNull(load("example.Outer$Inner_Dispatcher"));
+    }
+
+    @Test
+    public void shouldLeaveBatchMethodsToRuntimeMapping() throws Exception {
+        assertTrue(compile(source("example.SinkContract",
+                                  "package example;",
+                                  "public interface SinkContract extends se.sawano.akka.japi.messagehandling.Messages {",
+                                  "    @se.sawano.akka.japi.messagehandling.Batch",
+                                  "    void onSamples(java.util.List<Long> samples);",
+                                  "    void onMessage(String message);",
+                                  "}"),
+                           source("example.Sink",
+                                  "package example;",
+                                  "public class Sink implements SinkContract {",
+                                  "    public final StringBuilder received = new StringBuilder();",
+                                  "    public void onSamples(java.util.List<Long> samples) { received.append(samples).append(' '); }",
+                                  "    public void onMessage(String message) { received.append(\"String \"); }",
+                                  "}")));
+
+        final Object target = load("example.Sink").newInstance();
+        final GeneratedDispatcher dispatcher = (GeneratedDispatcher) load("example.Sink_Dispatcher").newInstance();
+
+        assertTrue(dispatcher.hasBatchHandlers());
+        assertTrue(dispatcher.dispatch(target, "a string"));
+        assertFalse(dispatcher.dispatch(target, 1L));
+        assertTrue(new MethodDelegate(target).onReceive(2L));
+        assertEquals("String [2] ", receivedBy(target));
+    }
+
+    @Test
+    public void shouldLeaveReplyingRequestMethodsToRuntimeMapping() throws Exception {
+        assertTrue(compile(source("example.AsyncContract",
+                                  "package example;",
+                                  "public interface AsyncContract extends se.sawano.akka.japi.messagehandling.Requests {",
+                                  "    java.util.concurrent.CompletionStage<String> onRequest(Long request);",
+                                  "    Integer onRequest(Integer request);",
+                                  "    void onRequest(String request);",
+                                  "}"),
+                           source("example.AsyncResponder",
+                                  "package example;",
+                                  "public class AsyncResponder implements AsyncContract {",
+                                  "    public final StringBuilder received = new StringBuilder();",
+                                  "    public java.util.concurrent.CompletionStage<String> onRequest(Long request) {",
+                                  "        received.append(\"Long \");",
+                                  "        return java.util.concurrent.CompletableFuture.completedFuture(\"done\");",
+                                  "    }",
+                                  "    public Integer onRequest(Integer request) { received.append(\"Integer \"); return request; }",
+                                  "    public void onRequest(String request) { received.append(\"String \"); }",
+                                  "}")));
+
+        final Object target = load("example.AsyncResponder").newInstance();
+        final GeneratedDispatcher dispatcher = (GeneratedDispatcher) load("example.AsyncResponder_Dispatcher").newInstance();
+
+        assertTrue(dispatcher.hasReplyingHandlers());
+        assertTrue(dispatcher.dispatch(target, "a string"));
+        assertFalse(dispatcher.dispatch(target, 1L));
+        assertFalse(dispatcher.dispatch(target, 1));
+        assertTrue(new MethodDelegate(target).onReceive(2L));
+        assertTrue(new MethodDelegate(target).onReceive(2));
+        assertEquals("String Long Integer ", receivedBy(target));
+    }
+
+    @Test
+    public void shouldLeaveOffloadedMethodsToRuntimeMapping() throws Exception {
+        assertTrue(compile(source("example.StoreContract",
+                                  "package example;",
+                                  "public interface StoreContract extends se.sawano.akka.japi.messagehandling.Messages {",
+                                  "    @se.sawano.akka.japi.messagehandling.Blocking",
+                                  "    void onMessage(Long message);",
+                                  "    @se.sawano.akka.japi.messagehandling.Stateless",
+                                  "    void onMessage(Integer message);",
+                                  "    void onMessage(String message);",
+                                  "}"),
+                           source("example.FileStore",
+                                  "package example;",
+                                  "public class FileStore implements StoreContract {",
+                                  "    public final StringBuilder received = new StringBuilder();",
+                                  "    public void onMessage(Long message) { received.append(\"Long \"); }",
+                                  "    public void onMessage(Integer message) { received.append(\"Integer \"); }",
+                                  "    public void onMessage(String message) { received.append(\"String \"); }",
+                                  "}")));
+
+        final Object target = load("example.FileStore").newInstance();
+        final GeneratedDispatcher dispatcher = (GeneratedDispatcher) load("example.FileStore_Dispatcher").newInstance();
+
+        assertTrue(dispatcher.hasOffloadedHandlers());
+        assertFalse(dispatcher.hasReplyingHandlers());
+        assertTrue(dispatcher.dispatch(target, "a string"));
+        assertFalse(dispatcher.dispatch(target, 1L));
+        assertFalse(dispatcher.dispatch(target, 1));
+        assertEquals("String ", receivedBy(target));
+    }
+
+    @Test
+    public void shouldFailOnAsyncMessageMethod() throws Exception {
+        assertFalse(compile(source("example.AsyncMessagesContract",
+                                   "package example;",
+                                   "public interface AsyncMessagesContract extends se.sawano.akka.japi.messagehandling.Messages {",
+                                   "    java.util.concurrent.CompletionStage<String> onMessage(Long message);",
+                                   "}"),
+                            source("example.AsyncMessages",
+                                   "package example;",
+                                   "public class AsyncMessages implements AsyncMessagesContract {",
+                                   "    public java.util.concurrent.CompletionStage<String> onMessage(Long message) { return null; }",
+                                   "}")));
+
+        assertErrorContaining("CompletionStage");
+    }
+
+    @Test
+    public void shouldGenerateClientForContractInterface() throws Exception {
+        assertTrue(compile(source("example.UserManager",
+                                  "package example;",
+                                  "public interface UserManager extends se.sawano.akka.japi.messagehandling.Requests {",
+                                  "    void onRequest(String request);",
+                                  "    java.util.concurrent.CompletionStage<String> onRequest(Long request);",
+                                  "    @se.sawano.akka.japi.messagehandling.Batch",
+                                  "    void onRequests(java.util.List<Integer> requests);",
+                                  "}")));
+
+        final Class<?> contract = load("example.UserManager");
+        final ActorSystem system = ActorSystem.create();
+        try {
+            final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+            final Object client = ContractClients.clientFor(contract, system.actorOf(Props.create(Recorder.class, received)));
+            contract.getMethod("onRequest", String.class).invoke(client, "a string");
+            contract.getMethod("onRequests", List.class).invoke(client, Arrays.asList(1, 2));
+            final CompletionStage<?> reply = (CompletionStage<?>) contract.getMethod("onRequest", Long.class).invoke(client, 3L);
+
+            assertEquals("reply 3", reply.toCompletableFuture().get(3, TimeUnit.SECONDS));
+            assertEquals(Arrays.<Object>asList("a string", 1, 2, 3L), Arrays.asList(received.toArray()));
+            assertFalse(new File(classes, "example/UserManager_Client_Dispatcher.class").exists());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldGenerateClientForGenericContractInterface() throws Exception {
+        assertTrue(compile(source("example.Store",
+                                  "package example;",
+                                  "public interface Store<T extends Number> extends se.sawano.akka.japi.messagehandling.Messages {",
+                                  "    void onMessage(T message);",
+                                  "}")));
+
+        final Class<?> client = load("example.Store_Client");
+        assertEquals(1, client.getTypeParameters().length);
+        assertTrue(load("example.Store").isAssignableFrom(client));
+    }
+
+    @Test
+    public void shouldNotGenerateClientForContractWithSynchronousReplies() throws Exception {
+        assertTrue(compile(source("example.Calculator",
+                                  "package example;",
+                                  "public interface Calculator extends se.sawano.akka.japi.messagehandling.Requests {",
+                                  "    Long onRequest(Long request);",
+                                  "}")));
+
+        assertFalse(new File(classes, "example/Calculator_Client.class").exists());
+    }
+
+    @Test
+    public void shouldNotGenerateClientForContractWithRepliesThatAreNotCompletionStages() throws Exception {
+        assertTrue(compile(source("example.Lookup",
+                                  "package example;",
+                                  "public interface Lookup extends se.sawano.akka.japi.messagehandling.Requests {",
+                                  "    Object onRequest(Long request);",
+                                  "}")));
+
+        assertFalse(new File(classes, "example/Lookup_Client.class").exists());
+    }
+
+    @Test
+    public void shouldGenerateClientForContractWithCompletableFutureReplies() throws Exception {
+        assertTrue(compile(source("example.Search",
+                                  "package example;",
+                                  "public interface Search extends se.sawano.akka.japi.messagehandling.Requests {",
+                                  "    java.util.concurrent.CompletableFuture<String> onRequest(Long request);",
+                                  "}")));
+
+        assertTrue(new File(classes, "example/Search_Client.class").exists());
+    }
+
+    @Test
+    public void shouldFailOnBatchMethodWithoutList() throws Exception {
+        assertFalse(compile(source("example.InvalidSinkContract",
+                                   "package example;",
+                                   "public interface InvalidSinkContract extends se.sawano.akka.japi.messagehandling.Messages {",
+                                   "    @se.sawano.akka.japi.messagehandling.Batch",
+                                   "    void onSamples(Long samples);",
+                                   "}"),
+                            source("example.InvalidSink",
+                                   "package example;",
+                                   "public class InvalidSink implements InvalidSinkContract {",
+                                   "    public void onSamples(Long samples) {}",
+                                   "}")));
+
+        assertErrorContaining("Batch method must have a parameter of type List<T>");
+    }
+
+    @Test
+    public void shouldFailOnClashingMessageTypes() throws Exception {
+        assertFalse(compile(source("example.Clashing",
+                                   "package example;",
+                                   "public class Clashing implements se.sawano.akka.japi.messagehandling.predef.Requests1<Double>,",
+                                   "        se.sawano.akka.japi.messagehandling.predef.Responses1<Double> {",
+                                   "    public void onRequest(Double request) {}",
+                                   "    public void onResponse(Double response) {}",
+                                   "}")));
+
+        assertErrorContaining("already mapped");
+    }
+
+    @Test
+    public void shouldFailOnInheritedTargetMethod() throws Exception {
+        assertFalse(compile(source("example.Base",
+                                   "package example;",
+                                   "public class Base {",
+                                   "    public void onMessage(String message) {}",
+                                   "}"),
+                            source("example.Sub",
+                                   "package example;",
+                                   "public class Sub extends Base implements se.sawano.akka.japi.messagehandling.predef.Messages1<String> {",
+                                   "}")));
+
+        assertErrorContaining("Unable to find target method");
+    }
+
+    @Test
+    public void shouldNotGenerateDispatcherForAbstractClass() throws Exception {
+        assertTrue(compile(source("example.Abstract",
+                                  "package example;",
+                                  "public abstract class Abstract implements se.sawano.akka.japi.messagehandling.predef.Messages1<String> {",
+                                  "}")));
+
+        assertFalse(new File(classes, "example/Abstract_Dispatcher.class").exists());
+    }
+
+    private boolean compile(final JavaFileObject... sources) throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classes));
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(classes));
+            fileManager.setLocation(StandardLocation.CLASS_PATH, Arrays.asList(locationOf(Messages.class), locationOf(ThreadSafe.class),
+                                                                                locationOf(ActorRef.class), locationOf(Option.class)));
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, null, null, Arrays.asList(sources));
+            task.setProcessors(Collections.singletonList(new DispatcherProcessor()));
+            return task.call();
+        }
+    }
+
+    private File locationOf(final Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private Class<?> load(final String className) throws Exception {
+        if (classLoader == null) {
+            classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        }
+        return classLoader.loadClass(className);
+    }
+
+    private String receivedBy(final Object target) throws Exception {
+        return target.getClass().getField("received").get(target).toString();
+    }
+
+    private void assertErrorContaining(final String text) {
+        final List<Diagnostic<? extends JavaFileObject>> all = diagnostics.getDiagnostics();
+        for (final Diagnostic<? extends JavaFileObject> diagnostic : all) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(null).contains(text)) {
+                return;
+            }
+        }
+        fail("Expected an error containing '" + text + "' but got: " + all);
+    }
+
+    public static final class Recorder extends UntypedActor {
+        private final BlockingQueue<Object> received;
+
+        public Recorder(final BlockingQueue<Object> received) {
+            this.received = received;
+        }
+
+        @Override
+        public void onReceive(final Object message) {
+            received.add(message);
+            if (message instanceof Long) {
+                getSender().tell("reply " + message, getSelf());
+            }
+        }
+    }
+
+    private static JavaFileObject source(final String className, final String... lines) {
+        final StringBuilder code = new StringBuilder();
+        for (final String line : lines) {
+            code.append(line).append('\n');
+        }
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.DeadLetter;
+import akka.actor.Status;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps track of the asynchronous requests of a {@link MessageDelegatingActor}, i.e. requests received by methods that return a {@link
+ * CompletionStage}, and of the invocations of its offloaded methods, i.e. {@link Blocking} and {@link Stateless} methods, which are run on
+ * their dispatcher. The result of each request is replied to the sender of its request, a failure as a {@link Status.Failure}. A request
+ * that completes with {@code null}, e.g. a {@code CompletionStage<Void>}, is not replied to. A failure of an offloaded method that does not
+ * reply is thrown by the actor instead.
+ * <p>
+ * The number of requests and offloaded invocations in flight is bounded by {@link MessageDelegatingActor#maxRequestsInFlight()}. Messages
+ * received while the bound is reached wait, in order, until an earlier invocation completes. Completions are sent to the actor as messages,
+ * so all state is only touched by the actor. Unordered replies are sent directly when their stage completes, ordered replies are sent by the
+ * actor once all earlier ordered replies have been sent, see {@link MessageDelegatingActor#preserveReplyOrder()}.
+ * </p>
+ * <p>
+ * Invocations of {@link HandlerMethod#isSequential() sequential} blocking methods are started one at a time, in the order they were
+ * received. A further one waits until the previous one completes. The decision whether an offloaded invocation is sampled for metrics is
+ * made by the actor, the thread that runs the invocation only records it.
+ * </p>
+ * <p>
+ * Waiting messages belong to the incarnation of the actor that received them. When it stops or restarts they are abandoned, see {@link
+ * #abandonWaitingRequests()}. A waiting message that fails to start when its turn comes only fails itself, the messages after it are
+ * still started.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@NotThreadSafe
+final class AsyncRequests {
+
+    private final MessageDelegatingActor actor;
+    private final ArrayDeque<Reply> orderedReplies = new ArrayDeque<>();
+    private final ArrayDeque<Request> waitingRequests = new ArrayDeque<>();
+    private final ArrayDeque<Request> waitingSequentialRequests = new ArrayDeque<>();
+    private int requestsInFlight;
+    /**
+     * If a sequential invocation has been received and has not yet completed, i.e. it is either waiting for a slot or in flight.
+     */
+    private boolean sequentialPending;
+
+    AsyncRequests(final MessageDelegatingActor actor) {
+        requireNonNull(actor);
+
+        this.actor = actor;
+    }
+
+    /**
+     * A request to a replying method that fails to start is replied to with the failure, just as a waiting request is, see {@link
+     * #startWaitingRequests()}. The failure of any other message is thrown, as is an error, which is also replied to.
+     */
+    void receive(final HandlerMethod method, final Object message, final ActorRef sender) {
+        if (method.isSequential()) {
+            if (sequentialPending) {
+                waitingSequentialRequests.add(new Request(method, message, sender));
+                return;
+            }
+            sequentialPending = true;
+        }
+        if (requestsInFlight >= actor.maxRequestsInFlight()) {
+            waitingRequests.add(new Request(method, message, sender));
+            return;
+        }
+        try {
+            start(method, message, sender);
+        } catch (RuntimeException | Error e) {
+            if (method.isSequential()) {
+                sequentialPending = false;
+            }
+            if (!method.isReplying()) {
+                throw e;
+            }
+            sender.tell(new Status.Failure(failureToReply(e)), actor.getSelf());
+            if (e instanceof Error) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Lets the next sequential invocation, if any, wait for a slot once the previous one has completed or failed to start.
+     */
+    private void releaseSequential() {
+        sequentialPending = !waitingSequentialRequests.isEmpty();
+        if (sequentialPending) {
+            waitingRequests.add(waitingSequentialRequests.poll());
+        }
+    }
+
+    private void start(final HandlerMethod method, final Object message, final ActorRef sender) {
+        final CompletionStage<?> stage = method.isOffloaded() ? invokeOffloaded(method, message) : (CompletionStage<?>) actor.methodDelegate()
+                .deliver(method, message, false);
+        ++requestsInFlight;
+        final Reply reply = new Reply(this, sender, method, method.isReplying() && actor.preserveReplyOrder());
+        if (reply.ordered) {
+            orderedReplies.add(reply);
+        }
+        stage.whenComplete(new Completion(reply, actor.getSelf()));
+    }
+
+    private CompletionStage<?> invokeOffloaded(final HandlerMethod method, final Object message) {
+        final OffloadedInvocation invocation = new OffloadedInvocation(actor.methodDelegate(), method, message,
+                                                                       actor.methodDelegate().sampleOffloaded());
+        return CompletableFuture.supplyAsync(invocation, actor.offloadExecutor(method.offloadDispatcher()));
+    }
+
+    /**
+     * @return {@code true} if the message was the completion of an asynchronous request or offloaded invocation
+     *
+     * @throws DelegateException
+     *         if the completed invocation was of an offloaded method that does not reply and it failed, unless the delegate rethrows
+     *         exceptions as they are
+     */
+    boolean onCompleted(final Object message) throws DelegateException {
+        if (!(message instanceof Completed)) {
+            return false;
+        }
+        final Reply reply = ((Completed) message).reply;
+        if (reply.owner != this) {
+            // Started before the actor was restarted
+            if (reply.ordered) {
+                reply.send(actor.getSelf());
+            }
+            return true;
+        }
+        --requestsInFlight;
+        reply.completed = true;
+        if (reply.method.isSequential()) {
+            releaseSequential();
+        }
+        while (!orderedReplies.isEmpty() && orderedReplies.peek().completed) {
+            orderedReplies.poll().send(actor.getSelf());
+        }
+        final RuntimeException startFailure = startWaitingRequests();
+        if (!reply.replying && reply.failure != null) {
+            if (reply.failure instanceof RuntimeException) {
+                // Already reported according to the failure mode of the delegate
+                throw (RuntimeException) reply.failure;
+            }
+            throw actor.methodDelegate().failureOf(reply.failure, reply.method);
+        }
+        if (startFailure != null) {
+            throw startFailure;
+        }
+        return true;
+    }
+
+    /**
+     * A request that fails to start is replied to with the failure, if it is a request to a replying method, so that the requests after it
+     * are still started. The failure of the first other message that fails to start is returned, to be thrown by the actor once all
+     * requests that can be started have been.
+     */
+    private RuntimeException startWaitingRequests() {
+        RuntimeException failure = null;
+        while (!waitingRequests.isEmpty() && requestsInFlight < actor.maxRequestsInFlight()) {
+            final Request request = waitingRequests.poll();
+            try {
+                start(request.method, request.message, request.sender);
+            } catch (RuntimeException e) {
+                if (request.method.isSequential()) {
+                    releaseSequential();
+                }
+                if (request.method.isReplying()) {
+                    request.sender.tell(new Status.Failure(failureToReply(e)), actor.getSelf());
+                }
+                else if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Called when the actor stops, which includes when it restarts. Messages that are still waiting to be started will never be, so
+     * requests to replying methods are replied to with a {@link Status.Failure} and other messages are published as dead letters.
+     */
+    void abandonWaitingRequests() {
+        final IllegalStateException failure = new IllegalStateException("Actor stopped before the request was started: " + actor.getSelf());
+        waitingRequests.addAll(waitingSequentialRequests);
+        waitingSequentialRequests.clear();
+        sequentialPending = false;
+        while (!waitingRequests.isEmpty()) {
+            final Request request = waitingRequests.poll();
+            if (request.method.isReplying()) {
+                request.sender.tell(new Status.Failure(failure), actor.getSelf());
+            }
+            else {
+                actor.getContext().system().deadLetters().tell(new DeadLetter(request.message, request.sender, actor.getSelf()),
+                                                               request.sender);
+            }
+        }
+    }
+
+    /**
+     * @return the exception thrown by the method of a request, rather than the one it is wrapped in by the delegate
+     */
+    private static Throwable failureToReply(final Throwable failure) {
+        return failure instanceof DelegateException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private static final class Request {
+        private final HandlerMethod method;
+        private final Object message;
+        private final ActorRef sender;
+
+        private Request(final HandlerMethod method, final Object message, final ActorRef sender) {
+            this.method = method;
+            this.message = message;
+            this.sender = sender;
+        }
+    }
+
+    /**
+     * The result is set by the thread completing the stage before the completion is sent to the actor, which makes it visible to the actor.
+     */
+    private static final class Reply {
+        private final AsyncRequests owner;
+        private final ActorRef sender;
+        private final HandlerMethod method;
+        private final boolean replying;
+        private final boolean ordered;
+        private Object result;
+        private Throwable failure;
+        private boolean completed;
+
+        private Reply(final AsyncRequests owner, final ActorRef sender, final HandlerMethod method, final boolean ordered) {
+            this.owner = owner;
+            this.sender = sender;
+            this.method = method;
+            this.replying = method.isReplying();
+            this.ordered = ordered;
+        }
+
+        private void send(final ActorRef self) {
+            if (!replying) {
+                return;
+            }
+            if (failure != null) {
+                sender.tell(new Status.Failure(failureToReply(failure)), self);
+            }
+            else if (result != null) {
+                sender.tell(result, self);
+            }
+        }
+    }
+
+    private static final class Completed implements ControlMessage {
+        private final Reply reply;
+
+        private Completed(final Reply reply) {
+            this.reply = reply;
+        }
+    }
+
+    private static final class OffloadedInvocation implements Supplier<Object> {
+        private final MethodDelegate methodDelegate;
+        private final HandlerMethod method;
+        private final Object message;
+        private final boolean sampled;
+
+        private OffloadedInvocation(final MethodDelegate methodDelegate, final HandlerMethod method, final Object message,
+                                    final boolean sampled) {
+            this.methodDelegate = methodDelegate;
+            this.method = method;
+            this.message = message;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public Object get() {
+            return methodDelegate.deliverOffloaded(method, message, sampled);
+        }
+    }
+
+    private static final class Completion implements BiConsumer<Object, Throwable> {
+        private final Reply reply;
+        private final ActorRef self;
+
+        private Completion(final Reply reply, final ActorRef self) {
+            this.reply = reply;
+            this.self = self;
+        }
+
+        @Override
+        public void accept(final Object result, final Throwable failure) {
+            reply.result = result;
+            reply.failure = failure == null ? null : causeOf(failure);
+            if (!reply.ordered) {
+                reply.send(self);
+            }
+            self.tell(new Completed(reply), ActorRef.noSender());
+        }
+
+        private static Throwable causeOf(final Throwable failure) {
+            return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        }
+    }
+}
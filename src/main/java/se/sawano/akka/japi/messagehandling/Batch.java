@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a contract as a batch handler. A batch handler takes a {@link java.util.List} of messages and is mapped to the element
+ * type of the list, e.g. a target method {@code onSamples(List<Sample> samples)} receives messages of type {@code Sample}.
+ * <pre>
+ * public interface SampleSink extends Messages {
+ *     &#64;Batch(maxSize = 500)
+ *     void onSamples(List&lt;Sample&gt; samples);
+ * }</pre>
+ * <p>
+ * A {@link MessageDelegatingActor} drains the messages for a batch handler that are in its mailbox and delivers them in a single call, up
+ * to {@link #maxSize()} messages at a time. Messages for other methods are not held back by a batch and may be delivered before it. {@code
+ * getSender()} is not meaningful within a batch handler since the messages of a batch may come from different senders. A {@link
+ * MethodDelegate} that is used on its own delivers every message in a batch of its own.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Batch {
+
+    /**
+     * @return the maximum number of messages to deliver in a single call
+     */
+    int maxSize() default 100;
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a contract as blocking, e.g. because it does JDBC or file I/O. A {@link MessageDelegatingActor} does not invoke a
+ * blocking method on its own dispatcher but on the dispatcher named by {@link #dispatcher()}, so that the blocking method does not starve
+ * the actors sharing its dispatcher.
+ * <pre>
+ * public interface UserStore extends Requests {
+ *     &#64;Blocking
+ *     User onRequest(LoadUser request);
+ *
+ *     &#64;Blocking(dispatcher = "file-io-dispatcher")
+ *     void onRequest(ExportUsers request);
+ * }</pre>
+ * <p>
+ * The actor goes on with other messages while a blocking method runs and is told when it completes. A request method that returns a value
+ * replies with it, or with a {@link akka.actor.Status.Failure} if it fails. A failure of any other blocking method is thrown by the actor
+ * when it is told about it, which leaves it to the actor's supervisor. Since a blocking method runs outside the actor it must neither touch
+ * the state of the actor nor call {@code getSender()}. Blocking methods can neither be batch methods nor return a {@link
+ * java.util.concurrent.CompletionStage}. A {@link MethodDelegate} that is used on its own invokes blocking methods like any other method.
+ * </p>
+ * <p>
+ * The blocking methods of an actor are invoked one message at a time, in the order the messages were received, e.g. so that a write is done
+ * before a read that was sent after it. Messages for other methods are handled in the meantime. A method can be marked as {@link
+ * #concurrent()} to have its invocations run in parallel and complete in any order instead, up to {@link
+ * MessageDelegatingActor#maxRequestsInFlight()}.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see MessageDelegatingActor#offloadExecutor(String)
+ * @see MessageDelegatingActor#maxRequestsInFlight()
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Blocking {
+
+    /**
+     * The id of the dispatcher that is used if a blocking method does not name a dispatcher of its own. It is configured in the {@code
+     * reference.conf} of this library.
+     */
+    String DEFAULT_DISPATCHER = "se.sawano.akka.japi.messagehandling.blocking-dispatcher";
+
+    /**
+     * @return the id of the dispatcher to invoke the method on, or an empty string for {@link #DEFAULT_DISPATCHER}
+     */
+    String dispatcher() default "";
+
+    /**
+     * @return {@code true} if invocations of the method may run in parallel with each other and with other blocking methods of the actor,
+     * {@code false} to invoke the blocking methods of an actor one at a time, in order
+     */
+    boolean concurrent() default false;
+}
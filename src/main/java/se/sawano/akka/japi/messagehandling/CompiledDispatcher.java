@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.Immutable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Dispatches messages through a single method handle that is compiled from the mapping of a {@link MethodRepository}. The handle is a chain
+ * of class identity tests, one per mapped message type, each guarding a direct call to its target method. There is no map lookup and no
+ * reflection involved when dispatching.
+ * <p>
+ * The tests are run one after the other, in reverse order of registration, so dispatching costs one test per message type that is tested
+ * before the one that matches, and a message that is not mapped exactly is tested against every type. This is cheaper than a table lookup
+ * only for targets with a handful of message types. The handle is held in an instance field, not a constant, so the JIT compiles the call
+ * of {@link #dispatch(Object, Object)} as a call of a handle it cannot see into and does not inline the chain into the caller.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see InvocationMode#COMPILED
+ */
+@Immutable
+final class CompiledDispatcher {
+
+    private static final MethodHandle HAS_CLASS;
+    private static final MethodHandle NOT_HANDLED = dropArguments(constant(boolean.class, false), 0, Object.class, Object.class);
+    private static final MethodHandle HANDLED = constant(boolean.class, true);
+
+    static {
+        try {
+            HAS_CLASS = MethodHandles.lookup().findStatic(CompiledDispatcher.class, "hasClass",
+                                                          methodType(boolean.class, Class.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MethodHandle dispatcher;
+
+    CompiledDispatcher(final Map<Class<?>, HandlerMethod> handlers) {
+        requireNonNull(handlers);
+
+        this.dispatcher = compile(handlers);
+    }
+
+    private static MethodHandle compile(final Map<Class<?>, HandlerMethod> handlers) {
+        MethodHandle chain = NOT_HANDLED;
+        for (final Map.Entry<Class<?>, HandlerMethod> entry : handlers.entrySet()) {
+            final MethodHandle test = dropArguments(insertArguments(HAS_CLASS, 0, entry.getKey()), 0, Object.class);
+            final MethodHandle invocation = filterReturnValue(entry.getValue().invoker(), HANDLED);
+            chain = guardWithTest(test, invocation, chain);
+        }
+        return chain;
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    private static boolean hasClass(final Class<?> messageType, final Object message) {
+        return message.getClass() == messageType;
+    }
+
+    /**
+     * @return {@code true} if the message was delegated to the target, {@code false} if there is no method mapped for the message
+     */
+    boolean dispatch(final Object target, final Object message) throws Throwable {
+        return (boolean) dispatcher.invokeExact(target, message);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+/**
+ * A message that only needs to be received in its latest version. When delivered through a {@link ConflatingMailbox}, a message replaces any
+ * message of the same class and with an equal key that is still in the mailbox, instead of being queued after it. The replacing message
+ * takes the place of the replaced one in the mailbox.
+ * <pre>
+ * public final class PriceUpdate implements Conflatable {
+ *     private final String instrument;
+ *     private final BigDecimal price;
+ *
+ *     public Object conflationKey() {
+ *         return instrument;
+ *     }
+ * }</pre>
+ *
+ * @author Daniel Sawano
+ * @see Mergeable
+ * @see ConflatingMailbox
+ */
+public interface Conflatable {
+
+    /**
+     * @return the key that identifies the messages of this class that supersede each other. May be {@code null}, in which case all
+     * messages of this class with a {@code null} key supersede each other.
+     */
+    Object conflationKey();
+}
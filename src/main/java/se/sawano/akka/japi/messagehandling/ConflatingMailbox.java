@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import akka.event.EventStream;
+import akka.event.Logging;
+import com.typesafe.config.Config;
+import net.jcip.annotations.ThreadSafe;
+import scala.Option;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Unbounded mailbox that conflates {@link Conflatable} messages. A message that has the same class and key as a message that is still in
+ * the mailbox replaces it, or is merged with it if it is {@link Mergeable}, so an actor receives at most one pending message per class and
+ * key. Conflated messages keep the position in the mailbox of the first of them, and the sender of the last. All other messages are queued
+ * as in an ordinary unbounded mailbox.
+ * <p>
+ * Since messages are conflated by their class, the handling method of a conflatable message type is only invoked for its latest version,
+ * as long as the actor does not keep up with the sender.
+ * </p>
+ * <p>
+ * {@link Conflatable#conflationKey()} and {@link Mergeable#mergeWith(Mergeable)} are called by the thread that sends the message, the
+ * latter while holding the lock of the mailbox, so they hold up both the sender and other senders to the same actor. A message whose key
+ * cannot be computed, or that cannot be merged, is queued without being conflated and the failure is published as an error on the event
+ * stream of the actor system. A merge that returns {@code null} counts as a failure.
+ * </p>
+ * <p>
+ * Declare the mailbox in the configuration, e.g.
+ * </p>
+ * <pre>
+ * conflating-mailbox {
+ *   mailbox-type = "se.sawano.akka.japi.messagehandling.ConflatingMailbox"
+ * }</pre>
+ * <p>
+ * and use it with {@code Props.create(PriceActor.class).withMailbox("conflating-mailbox")}.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+public final class ConflatingMailbox implements MailboxType, ProducesMessageQueue<ConflatingMailbox.ConflatingMessageQueue> {
+
+    public ConflatingMailbox(final ActorSystem.Settings settings, final Config config) {
+    }
+
+    @Override
+    public MessageQueue create(final Option<ActorRef> owner, final Option<ActorSystem> system) {
+        return new ConflatingMessageQueue(system.isDefined() ? system.get().eventStream() : null);
+    }
+
+    /**
+     * The queue of a {@link ConflatingMailbox}. Queued messages are kept in a deque, conflatable messages in a slot that is looked up by
+     * class and key. Enqueuing and dequeuing are constant time operations and are guarded by the lock of the queue.
+     */
+    @ThreadSafe
+    public static final class ConflatingMessageQueue implements MessageQueue, UnboundedMessageQueueSemantics {
+
+        /**
+         * Holds either envelopes or, for conflatable messages, slots.
+         */
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        private final HashMap<Key, Slot> slots = new HashMap<>();
+        private final EventStream eventStream;
+        private long conflated;
+
+        /**
+         * Creates a queue that does not report messages that cannot be conflated.
+         */
+        public ConflatingMessageQueue() {
+            this(null);
+        }
+
+        /**
+         * @param eventStream
+         *         the event stream to publish failures to conflate messages on, or {@code null} if they should not be published
+         */
+        public ConflatingMessageQueue(final EventStream eventStream) {
+            this.eventStream = eventStream;
+        }
+
+        /**
+         * The key is computed before the lock is taken. A failure to conflate is published after it is released.
+         */
+        @Override
+        public void enqueue(final ActorRef receiver, final Envelope handle) {
+            final Object message = handle.message();
+            if (!(message instanceof Conflatable)) {
+                add(handle);
+                return;
+            }
+            final Key key;
+            try {
+                key = new Key(message.getClass(), ((Conflatable) message).conflationKey());
+            } catch (RuntimeException e) {
+                add(handle);
+                publishFailure(receiver, "Unable to get conflation key of " + message.getClass() + ", queued it as is", e);
+                return;
+            }
+            final RuntimeException failure = conflate(key, handle);
+            if (failure != null) {
+                publishFailure(receiver, "Unable to merge " + message.getClass() + " with queued message, queued it as is", failure);
+            }
+        }
+
+        private synchronized void add(final Envelope handle) {
+            queue.add(handle);
+        }
+
+        /**
+         * A message that cannot be merged is queued after the message it was to be merged with, which is left as it is. Later messages are
+         * still merged with that message.
+         *
+         * @return the failure to merge the message, or {@code null} if it was queued or conflated
+         */
+        private synchronized RuntimeException conflate(final Key key, final Envelope handle) {
+            final Slot slot = slots.get(key);
+            if (slot == null) {
+                final Slot newSlot = new Slot(key, handle);
+                slots.put(key, newSlot);
+                queue.add(newSlot);
+                return null;
+            }
+            try {
+                slot.envelope = merge(slot.envelope, handle);
+            } catch (RuntimeException e) {
+                queue.add(handle);
+                return e;
+            }
+            ++conflated;
+            return null;
+        }
+
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private static Envelope merge(final Envelope queued, final Envelope later) {
+            if (later.message() instanceof Mergeable) {
+                final Object merged = ((Mergeable) queued.message()).mergeWith((Mergeable) later.message());
+                requireNonNull(merged, "Merged message cannot be null");
+                return later.copy(merged, later.sender());
+            }
+            return later;
+        }
+
+        private void publishFailure(final ActorRef receiver, final String description, final RuntimeException failure) {
+            if (eventStream != null) {
+                final String logSource = receiver == null ? ConflatingMailbox.class.getSimpleName() : receiver.path().toString();
+                eventStream.publish(new Logging.Error(failure, logSource, ConflatingMailbox.class, description));
+            }
+        }
+
+        @Override
+        public synchronized Envelope dequeue() {
+            final Object head = queue.poll();
+            if (head instanceof Slot) {
+                final Slot slot = (Slot) head;
+                slots.remove(slot.key);
+                return slot.envelope;
+            }
+            return (Envelope) head;
+        }
+
+        @Override
+        public synchronized int numberOfMessages() {
+            return queue.size();
+        }
+
+        @Override
+        public synchronized boolean hasMessages() {
+            return !queue.isEmpty();
+        }
+
+        /**
+         * @return the number of messages that have replaced, or been merged with, a message in this queue
+         */
+        public synchronized long numberOfConflatedMessages() {
+            return conflated;
+        }
+
+        @Override
+        public void cleanUp(final ActorRef owner, final MessageQueue deadLetters) {
+            for (Envelope envelope = dequeue(); envelope != null; envelope = dequeue()) {
+                deadLetters.enqueue(owner, envelope);
+            }
+        }
+    }
+
+    private static final class Slot {
+        private final Key key;
+        private Envelope envelope;
+
+        private Slot(final Key key, final Envelope envelope) {
+            this.key = key;
+            this.envelope = envelope;
+        }
+    }
+
+    private static final class Key {
+        private final Class<?> type;
+        private final Object key;
+        private final int hash;
+
+        /**
+         * The hash is computed up front, so that hashing the key is done outside the lock of the queue.
+         */
+        private Key(final Class<?> type, final Object key) {
+            this.type = type;
+            this.key = key;
+            this.hash = 31 * type.hashCode() + Objects.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return type == other.type && Objects.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.OnComplete;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import net.jcip.annotations.ThreadSafe;
+import scala.concurrent.ExecutionContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Base class of the clients generated for contract interfaces, i.e. interfaces extending {@link Messages}, {@link Requests} or {@link
+ * Responses}. A generated client implements its contract interface by sending the argument of each method call to the target actor. Methods
+ * that return {@code void} {@code tell} the message, methods that return a {@link java.util.concurrent.CompletionStage} {@code ask} it and
+ * complete the stage with the reply. A {@link Batch} method sends each message of its list on its own, since the receiving side maps batch
+ * methods to the element type of the list.
+ * <p>
+ * Generated clients are named after their contract interface with the suffix {@value #CLASS_NAME_SUFFIX} and are created with {@link
+ * ContractClients#clientFor(Class, ActorRef, ActorRef, Timeout)}.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see ContractClients
+ */
+@ThreadSafe
+public abstract class ContractClient {
+
+    /**
+     * The suffix appended to the binary name of a contract interface to get the name of its generated client.
+     */
+    public static final String CLASS_NAME_SUFFIX = "_Client";
+
+    /**
+     * Replies are only used to complete a future, which is cheap enough to do on the thread that delivers the reply.
+     */
+    private static final ExecutionContext CALLING_THREAD = ExecutionContexts.fromExecutor(new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    });
+
+    private final ActorRef target;
+    private final ActorRef sender;
+    private final Timeout askTimeout;
+
+    /**
+     * @param target
+     *         the actor to send messages to
+     * @param sender
+     *         the sender of told messages, may be {@code null} for no sender
+     * @param askTimeout
+     *         how long to wait for the replies of asked messages
+     */
+    protected ContractClient(final ActorRef target, final ActorRef sender, final Timeout askTimeout) {
+        requireNonNull(target);
+        requireNonNull(askTimeout);
+
+        this.target = target;
+        this.sender = sender;
+        this.askTimeout = askTimeout;
+    }
+
+    /**
+     * @return the actor this client sends messages to
+     */
+    public final ActorRef target() {
+        return target;
+    }
+
+    protected final void tell(final Object message) {
+        target.tell(message, sender);
+    }
+
+    protected final void tellEach(final List<?> messages) {
+        for (final Object message : messages) {
+            tell(message);
+        }
+    }
+
+    /**
+     * @param message
+     *         the message to send
+     * @param <T>
+     *         the type of the reply
+     *
+     * @return a future that is completed with the reply to the message, or exceptionally if the reply is a {@link akka.actor.Status.Failure}
+     * or does not arrive in time
+     */
+    protected final <T> CompletableFuture<T> ask(final Object message) {
+        final CompletableFuture<T> reply = new CompletableFuture<>();
+        Patterns.ask(target, message, askTimeout).onComplete(new Completion<T>(reply), CALLING_THREAD);
+        return reply;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + target + "]";
+    }
+
+    private static final class Completion<T> extends OnComplete<Object> {
+        private final CompletableFuture<T> reply;
+
+        private Completion(final CompletableFuture<T> reply) {
+            this.reply = reply;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onComplete(final Throwable failure, final Object result) {
+            if (failure != null) {
+                reply.completeExceptionally(failure);
+            }
+            else {
+                reply.complete((T) result);
+            }
+        }
+    }
+}
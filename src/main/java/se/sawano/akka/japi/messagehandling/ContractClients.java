@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.util.Timeout;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates typed clients for contract interfaces. The clients are generated at compile time by the annotation processor of the
+ * {@code akka-message-java-processor} artifact, which must be on the compile class path of the contract interface. The constructor of each
+ * generated client is looked up once per interface.
+ * <p>
+ * For example, given a contract
+ * </p>
+ * <pre>
+ * public interface UserManager extends Requests {
+ *     void onRequest(CreateUser request);
+ *
+ *     CompletionStage&lt;User&gt; onRequest(GetUser request);
+ * }
+ *
+ * UserManager users = ContractClients.clientFor(UserManager.class, userManagerRef);
+ * users.onRequest(new CreateUser("alice"));
+ * users.onRequest(new GetUser("alice")).thenAccept(...); </pre>
+ *
+ * @author Daniel Sawano
+ * @see ContractClient
+ */
+public final class ContractClients {
+
+    /**
+     * The ask timeout of clients created without one.
+     */
+    public static final Timeout DEFAULT_ASK_TIMEOUT = new Timeout(5, TimeUnit.SECONDS);
+
+    private static final MethodType CONSTRUCTOR_TYPE = methodType(void.class, ActorRef.class, ActorRef.class, Timeout.class);
+    private static final MethodType FACTORY_TYPE = methodType(ContractClient.class, ActorRef.class, ActorRef.class, Timeout.class);
+
+    private static final ClassValue<MethodHandle> FACTORIES = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(final Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private ContractClients() {
+    }
+
+    /**
+     * Creates a client that sends told messages without a sender and waits {@link #DEFAULT_ASK_TIMEOUT} for replies.
+     *
+     * @param contract
+     *         the contract interface to get a client for
+     * @param target
+     *         the actor to send messages to
+     * @param <T>
+     *         the contract type
+     *
+     * @return a client implementing the contract interface
+     *
+     * @see #clientFor(Class, ActorRef, ActorRef, Timeout)
+     */
+    public static <T> T clientFor(final Class<T> contract, final ActorRef target) {
+        return clientFor(contract, target, ActorRef.noSender(), DEFAULT_ASK_TIMEOUT);
+    }
+
+    /**
+     * @param contract
+     *         the contract interface to get a client for
+     * @param target
+     *         the actor to send messages to
+     * @param sender
+     *         the sender of told messages, may be {@code null} for no sender
+     * @param askTimeout
+     *         how long to wait for the replies of methods returning a {@link java.util.concurrent.CompletionStage}
+     * @param <T>
+     *         the contract type
+     *
+     * @return a client implementing the contract interface
+     *
+     * @throws IllegalArgumentException
+     *         if no client was generated for the contract interface
+     * @throws IllegalStateException
+     *         if the generated client cannot be instantiated
+     */
+    public static <T> T clientFor(final Class<T> contract, final ActorRef target, final ActorRef sender, final Timeout askTimeout) {
+        requireNonNull(contract);
+        requireNonNull(target);
+        requireNonNull(askTimeout);
+
+        final ContractClient client;
+        try {
+            client = (ContractClient) FACTORIES.get(contract).invokeExact(target, sender, askTimeout);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to instantiate generated client for: " + contract.getName(), e);
+        }
+        return contract.cast(client);
+    }
+
+    private static MethodHandle load(final Class<?> contract) {
+        if (!contract.isInterface()) {
+            throw new IllegalArgumentException("Not an interface: " + contract.getName());
+        }
+        final String clientClassName = contract.getName() + ContractClient.CLASS_NAME_SUFFIX;
+        final Class<?> clientClass;
+        try {
+            clientClass = Class.forName(clientClassName, true, contract.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("No client generated for: " + contract.getName() + ". Is the annotation processor on the " +
+                                               "compile class path?", e);
+        }
+        if (!ContractClient.class.isAssignableFrom(clientClass) || !contract.isAssignableFrom(clientClass)) {
+            throw new IllegalArgumentException("Not a generated client of " + contract.getName() + ": " + clientClassName);
+        }
+        try {
+            return MethodHandles.publicLookup().findConstructor(clientClass, CONSTRUCTOR_TYPE).asType(FACTORY_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access constructor of generated client: " + clientClassName, e);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Identify;
+import akka.actor.PossiblyHarmful;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import com.typesafe.config.Config;
+import net.jcip.annotations.ThreadSafe;
+import scala.Option;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static se.sawano.akka.japi.messagehandling.MethodRepository.repositoryFor;
+
+/**
+ * Unbounded mailbox that orders messages by the category of the contract that declares the method receiving them. By default responses are
+ * received before requests, and requests before messages, since a response often releases resources that are held while waiting for it.
+ * Messages that the actor does not handle are received last. Within a category messages are received in the order they were sent.
+ * <p>
+ * Messages that control the actor rather than being handled by its contract are received first, so that they cannot be starved by a steady
+ * flow of other messages. These are Akka's {@link PossiblyHarmful} messages, e.g. {@code PoisonPill}, {@code Kill}, {@code Terminated} and
+ * {@code ReceiveTimeout}, {@link Identify} and the messages a {@link MessageDelegatingActor} sends to itself, e.g. to complete asynchronous
+ * requests. The marker a {@link MessageDelegatingActor} sends to itself to deliver its pending batches is received last instead, so that
+ * the batched messages still in the mailbox are added to the batches first.
+ * </p>
+ * <p>
+ * There is one queue per category, so both enqueuing and dequeuing take constant time. The category of a message is found through the
+ * mapping of the actor class, which is shared with the actor's {@link MethodDelegate}. The actor class is named in the configuration of
+ * the mailbox, so there is one mailbox per actor class, e.g.
+ * </p>
+ * <pre>
+ * boss-mailbox {
+ *   mailbox-type = "se.sawano.akka.japi.messagehandling.ContractPriorityMailbox"
+ *   actor-class = "com.example.Boss"
+ *   # Optional, this is the default order
+ *   category-order = [RESPONSE, REQUEST, MESSAGE]
+ * }</pre>
+ * <p>
+ * and use it with {@code Props.create(Boss.class).withMailbox("boss-mailbox")}. Without an actor class all messages are received in the
+ * order they were sent.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+public final class ContractPriorityMailbox implements MailboxType,
+                                                      ProducesMessageQueue<ContractPriorityMailbox.ContractPriorityMessageQueue> {
+
+    /**
+     * Name of the configuration setting that lists the categories {@code RESPONSE}, {@code REQUEST} and {@code MESSAGE} in the order their
+     * messages should be received.
+     */
+    public static final String CATEGORY_ORDER = "category-order";
+
+    /**
+     * Name of the configuration setting that names the actor class whose contract orders the messages.
+     */
+    public static final String ACTOR_CLASS = "actor-class";
+
+    private static final List<String> DEFAULT_ORDER = Arrays.asList(HandlerCategory.RESPONSE.name(), HandlerCategory.REQUEST.name(),
+                                                                    HandlerCategory.MESSAGE.name());
+
+    private final int[] priorities;
+    private final String actorClassName;
+    /**
+     * Loaded by the first message queue, since the class loader of the actor system is not known before.
+     */
+    private volatile Class<?> actorClass;
+
+    /**
+     * @param settings
+     *         the settings of the actor system
+     * @param config
+     *         the configuration of the mailbox
+     *
+     * @throws IllegalArgumentException
+     *         if the category order is not a permutation of all categories
+     */
+    public ContractPriorityMailbox(final ActorSystem.Settings settings, final Config config) {
+        this.priorities = prioritiesOf(config.hasPath(CATEGORY_ORDER) ? config.getStringList(CATEGORY_ORDER) : DEFAULT_ORDER);
+        this.actorClassName = config.hasPath(ACTOR_CLASS) ? config.getString(ACTOR_CLASS) : null;
+    }
+
+    /**
+     * @return the priority of each category, indexed by ordinal. The lower the value, the earlier its messages are received.
+     */
+    private static int[] prioritiesOf(final List<String> order) {
+        final HandlerCategory[] categories = HandlerCategory.values();
+        if (order.size() != categories.length) {
+            throw new IllegalArgumentException("Category order must contain each of " + Arrays.toString(categories) + " exactly once. Was: " +
+                                               order);
+        }
+        final int[] priorities = new int[categories.length];
+        Arrays.fill(priorities, -1);
+        for (int priority = 0; priority < order.size(); ++priority) {
+            final HandlerCategory category = HandlerCategory.valueOf(order.get(priority));
+            if (priorities[category.ordinal()] != -1) {
+                throw new IllegalArgumentException("Category: " + category + " occurs more than once in category order: " + order);
+            }
+            priorities[category.ordinal()] = priority;
+        }
+        return priorities;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *         if the actor class cannot be loaded
+     */
+    @Override
+    public MessageQueue create(final Option<ActorRef> owner, final Option<ActorSystem> system) {
+        return new ContractPriorityMessageQueue(actorClassIn(system), priorities);
+    }
+
+    private Class<?> actorClassIn(final Option<ActorSystem> system) {
+        if (actorClassName == null) {
+            return null;
+        }
+        Class<?> actorClass = this.actorClass;
+        if (actorClass == null) {
+            final boolean extended = system.isDefined() && system.get() instanceof ExtendedActorSystem;
+            final ClassLoader classLoader = extended ? ((ExtendedActorSystem) system.get()).dynamicAccess().classLoader()
+                                                     : ContractPriorityMailbox.class.getClassLoader();
+            try {
+                actorClass = Class.forName(actorClassName, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Unable to load actor class: " + actorClassName, e);
+            }
+            this.actorClass = actorClass;
+        }
+        return actorClass;
+    }
+
+    /**
+     * The queue of a {@link ContractPriorityMailbox}. Control messages, each category and unhandled messages have a lock free queue of
+     * their own, in that order. End of batch markers share the queue of unhandled messages.
+     */
+    @ThreadSafe
+    public static final class ContractPriorityMessageQueue implements MessageQueue, UnboundedMessageQueueSemantics {
+
+        private final MethodRepository repository;
+        private final int[] priorities;
+        private final ConcurrentLinkedQueue<Envelope>[] queues;
+
+        @SuppressWarnings("unchecked")
+        ContractPriorityMessageQueue(final Class<?> actorClass, final int[] priorities) {
+            this.repository = actorClass == null ? null : repositoryFor(actorClass);
+            this.priorities = priorities;
+            this.queues = (ConcurrentLinkedQueue<Envelope>[]) new ConcurrentLinkedQueue<?>[priorities.length + 2];
+            for (int i = 0; i < queues.length; ++i) {
+                queues[i] = new ConcurrentLinkedQueue<>();
+            }
+        }
+
+        @Override
+        public void enqueue(final ActorRef receiver, final Envelope handle) {
+            queues[priorityOf(handle.message())].add(handle);
+        }
+
+        private int priorityOf(final Object message) {
+            if (repository == null || isControl(message)) {
+                return 0;
+            }
+            if (message == MessageDelegatingActor.END_OF_BATCH) {
+                return priorities.length + 1;
+            }
+            final HandlerCategory category = categoryOf(message);
+            return category == null ? priorities.length + 1 : priorities[category.ordinal()] + 1;
+        }
+
+        private static boolean isControl(final Object message) {
+            return message instanceof ControlMessage || message instanceof PossiblyHarmful || message instanceof Identify;
+        }
+
+        /**
+         * A message with an ambiguous type is not handled here, it fails when received.
+         */
+        private HandlerCategory categoryOf(final Object message) {
+            try {
+                return repository.categoryOf(message.getClass());
+            } catch (IllegalStateException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Envelope dequeue() {
+            for (final ConcurrentLinkedQueue<Envelope> queue : queues) {
+                final Envelope envelope = queue.poll();
+                if (envelope != null) {
+                    return envelope;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int numberOfMessages() {
+            int count = 0;
+            for (final ConcurrentLinkedQueue<Envelope> queue : queues) {
+                count += queue.size();
+            }
+            return count;
+        }
+
+        @Override
+        public boolean hasMessages() {
+            for (final ConcurrentLinkedQueue<Envelope> queue : queues) {
+                if (!queue.isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void cleanUp(final ActorRef owner, final MessageQueue deadLetters) {
+            for (Envelope envelope = dequeue(); envelope != null; envelope = dequeue()) {
+                deadLetters.enqueue(owner, envelope);
+            }
+        }
+    }
+}
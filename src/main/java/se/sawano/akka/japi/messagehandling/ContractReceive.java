@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.AbstractActor;
+import net.jcip.annotations.NotThreadSafe;
+import scala.Function1;
+import scala.runtime.AbstractPartialFunction;
+import scala.runtime.BoxedUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The behavior of a {@link MessageDelegatingAbstractActor}, i.e. the partial function that Akka applies to every message the actor
+ * receives. It is defined for the messages that are handled by the contract of the actor and delegates them to the actor through its {@link
+ * MethodDelegate}. Request methods that do not return {@code void} reply with their return value, unless it is {@code null}.
+ * <p>
+ * The contract is mapped once per actor class and the mapping is shared by all instances. A function is created once per actor and only
+ * binds the mapping to the actor, so a message costs a single lookup of its method and the invocation of the method's handle, or a call to
+ * the generated dispatcher of the actor class. Akka calls {@link #applyOrElse(Object, Function1)}, which does not test the message
+ * before it is delegated.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@NotThreadSafe
+final class ContractReceive extends AbstractPartialFunction<Object, BoxedUnit> {
+
+    private final AbstractActor actor;
+    private final MethodDelegate methodDelegate;
+    /**
+     * Replying methods need the receiving method of a message to be looked up before it is delivered.
+     */
+    private final boolean lookingUpMethods;
+
+    /**
+     * @throws IllegalArgumentException
+     *         if the actor has any {@link Batch}, {@link Blocking}, {@link Stateless} or asynchronous methods
+     */
+    ContractReceive(final AbstractActor actor, final MethodDelegate methodDelegate) {
+        requireNonNull(actor);
+        requireNonNull(methodDelegate);
+
+        if (methodDelegate.hasBatchHandlers() || methodDelegate.hasOffloadedHandlers() || methodDelegate.hasAsyncHandlers()) {
+            throw new IllegalArgumentException("Batch, blocking, stateless and asynchronous methods are only supported by a " +
+                                               "MessageDelegatingActor: " + actor.getClass());
+        }
+        this.actor = actor;
+        this.methodDelegate = methodDelegate;
+        this.lookingUpMethods = methodDelegate.hasReplyingHandlers();
+    }
+
+    @Override
+    public boolean isDefinedAt(final Object message) {
+        return methodDelegate.handles(message.getClass());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A1, B1> B1 applyOrElse(final A1 message, final Function1<A1, B1> fallback) {
+        if (lookingUpMethods ? receiveLookingUpMethod(message) : methodDelegate.onReceive(message)) {
+            return (B1) BoxedUnit.UNIT;
+        }
+        return fallback.apply(message);
+    }
+
+    private boolean receiveLookingUpMethod(final Object message) {
+        final HandlerMethod method = methodDelegate.methodFor(message);
+        if (method == null) {
+            return false;
+        }
+        final Object reply = methodDelegate.deliver(method, message, false);
+        if (reply != null) {
+            actor.sender().tell(reply, actor.self());
+        }
+        return true;
+    }
+}
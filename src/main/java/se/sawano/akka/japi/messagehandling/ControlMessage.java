@@ -0,0 +1,27 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+/**
+ * Marks the messages that a {@link MessageDelegatingActor} sends to itself to drive its own handling of other messages, e.g. the completion
+ * of an asynchronous request. They are received before any message of the contract by a {@link ContractPriorityMailbox}, since messages of
+ * the contract may wait for them.
+ *
+ * @author Daniel Sawano
+ */
+interface ControlMessage {
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013 Daniel Sawano
+ * Copyright 2014 Daniel Sawano
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,69 @@
 
 package se.sawano.akka.japi.messagehandling;
 
+import java.lang.reflect.Method;
+
 /**
  * Exception thrown by {@link MethodDelegate}.
+ * <p>
+ * Exceptions that wrap the failure of a message receiving method carry the method and the message type, and have no stack trace of their
+ * own since the stack trace of the cause tells where the failure happened. See {@link FailureMode}.
+ * </p>
  *
  * @author Daniel Sawano
  */
 public class DelegateException extends RuntimeException {
 
+    private final transient Method handler;
+    private final Class<?> messageType;
+
     public DelegateException(String message, Throwable cause) {
         super(message, cause);
+        this.handler = null;
+        this.messageType = null;
+    }
+
+    /**
+     * Creates an exception without a stack trace that wraps the failure of a message receiving method.
+     *
+     * @param message
+     *         the detail message
+     * @param cause
+     *         the exception thrown by the method
+     * @param handler
+     *         the method, or {@code null} if not known
+     * @param messageType
+     *         the type of the message the method was invoked with
+     */
+    public DelegateException(String message, Throwable cause, Method handler, Class<?> messageType) {
+        super(message, cause, true, false);
+        this.handler = handler;
+        this.messageType = messageType;
+    }
+
+    /**
+     * @return the message receiving method that failed, or {@code null} if not known
+     */
+    public Method handler() {
+        return handler;
+    }
+
+    /**
+     * @return the type of the message that the method failed on, or {@code null} if not known
+     */
+    public Class<?> messageType() {
+        return messageType;
+    }
+
+    /**
+     * The handler and message type are only added to the detail message when it is asked for, which keeps creating the exception cheap.
+     */
+    @Override
+    public String getMessage() {
+        if (handler == null && messageType == null) {
+            return super.getMessage();
+        }
+        final String typeName = messageType == null ? null : messageType.getName();
+        return super.getMessage() + " [handler: " + handler + ", message type: " + typeName + "]";
     }
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionIdProvider;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import com.typesafe.config.Config;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Actor system extension that maps target classes when the actor system starts, so that the first message to each actor does not pay for
+ * mapping its class. Target classes are mapped in parallel on a fork join pool. A class that cannot be mapped fails the start of the actor
+ * system, instead of the creation of the first actor of that class. Load the extension and list the target classes, or packages whose
+ * target classes should be mapped, in the configuration, e.g.
+ * <pre>
+ * akka.extensions = ["se.sawano.akka.japi.messagehandling.DispatchWarmup$Provider"]
+ * se.sawano.akka.japi.messagehandling.warmup {
+ *   targets = ["com.example.Boss", "com.example.workers.*"]
+ * }</pre>
+ * <p>
+ * For each class the mapping of its methods, its generated dispatcher if any and, if {@link InvocationMode#COMPILED} is the default
+ * mode, its compiled dispatcher are created. The methods of the target are not invoked. The time it took to map each class is logged and
+ * available from {@link #registrationNanos()}.
+ * </p>
+ * <p>
+ * Messages to a class without a generated or compiled dispatcher are dispatched through the {@link InlineCache} of their delegate. For
+ * such classes, the message types are then looked up {@code lookups-per-type} times each through an inline cache of their own, which
+ * runs the same code as the delegates will, or not at all if set to 0. That code is shared by all classes, so the default is low and
+ * the lookups of all warmed up classes add up towards it being compiled by the JIT. The lookups are timed and logged separately.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@ThreadSafe
+public final class DispatchWarmup implements Extension {
+
+    /**
+     * Path of the configuration section of the extension.
+     */
+    public static final String CONFIG_PATH = "se.sawano.akka.japi.messagehandling.warmup";
+
+    /**
+     * Suffix of a target that names a package rather than a class.
+     */
+    public static final String PACKAGE_SUFFIX = ".*";
+
+    private final ClassLoader classLoader;
+    private final int parallelism;
+    private final int lookupsPerType;
+    private final LoggingAdapter log;
+    private final Map<Class<?>, Long> registrationNanos = new ConcurrentHashMap<>();
+
+    private DispatchWarmup(final ExtendedActorSystem system) {
+        final Config config = system.settings().config().getConfig(CONFIG_PATH);
+        final int configuredParallelism = config.getInt("parallelism");
+        this.classLoader = system.dynamicAccess().classLoader();
+        this.parallelism = configuredParallelism > 0 ? configuredParallelism : Runtime.getRuntime().availableProcessors();
+        this.lookupsPerType = config.getInt("lookups-per-type");
+        if (lookupsPerType < 0) {
+            throw new IllegalArgumentException(CONFIG_PATH + ".lookups-per-type cannot be negative: " + lookupsPerType);
+        }
+        this.log = Logging.getLogger(system, this);
+        warmUp(config.getStringList("targets"));
+    }
+
+    /**
+     * @param system
+     *         the actor system to get the extension of
+     *
+     * @return the extension of the given actor system, loading it if not already loaded
+     */
+    public static DispatchWarmup get(final ActorSystem system) {
+        return Provider.INSTANCE.get(system);
+    }
+
+    /**
+     * Maps the given target classes, and the target classes of the given packages, in parallel. Classes that are already mapped are not
+     * mapped again, but their lookups are still warmed up.
+     *
+     * @param targets
+     *         fully qualified class names, or package names followed by {@value #PACKAGE_SUFFIX}
+     *
+     * @return the time in nanoseconds it took to map each class, in the order of the given targets
+     *
+     * @throws IllegalArgumentException
+     *         if a class cannot be found, is not a target class, or a package cannot be read
+     * @throws IllegalStateException
+     *         if a class cannot be mapped, with the exception thrown by the mapping as cause
+     */
+    public Map<Class<?>, Long> warmUp(final List<String> targets) {
+        requireNonNull(targets);
+
+        final List<Class<?>> classes = classesOf(targets);
+        final Map<Class<?>, Long> nanos = new LinkedHashMap<>();
+        final Map<Class<?>, Long> lookupNanos = new ConcurrentHashMap<>();
+        if (classes.isEmpty()) {
+            return nanos;
+        }
+        final ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, classes.size()));
+        try {
+            final ExecutorCompletionService<Object> completions = new ExecutorCompletionService<>(pool);
+            final Map<Future<Object>, Class<?>> tasks = new LinkedHashMap<>();
+            for (final Class<?> type : classes) {
+                tasks.put(completions.submit(new Registration(type, lookupNanos)), type);
+            }
+            for (int i = 0; i < classes.size(); ++i) {
+                final Future<Object> completed = completions.take();
+                try {
+                    completed.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Unable to map target class: " + tasks.get(completed).getName(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while mapping target classes", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        for (final Class<?> type : classes) {
+            final long time = registrationNanos.get(type);
+            nanos.put(type, time);
+            log.info("Mapped {} in {} ms and warmed up its lookups in {} ms", type.getName(), millisOf(time),
+                     millisOf(lookupNanos.get(type)));
+        }
+        return nanos;
+    }
+
+    /**
+     * @return the time in nanoseconds it took to map each class that has been warmed up by this extension
+     */
+    public Map<Class<?>, Long> registrationNanos() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(registrationNanos));
+    }
+
+    private static double millisOf(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+    }
+
+    private List<Class<?>> classesOf(final List<String> targets) {
+        final TargetScanner scanner = new TargetScanner(classLoader);
+        final List<Class<?>> classes = new ArrayList<>();
+        for (final String target : targets) {
+            if (target.endsWith(PACKAGE_SUFFIX)) {
+                classes.addAll(scanner.targetsIn(target.substring(0, target.length() - PACKAGE_SUFFIX.length())));
+            }
+            else {
+                classes.add(targetClassOf(target));
+            }
+        }
+        return classes;
+    }
+
+    private Class<?> targetClassOf(final String className) {
+        final Class<?> type;
+        try {
+            type = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unable to find target class: " + className, e);
+        }
+        if (!TargetScanner.isTarget(type)) {
+            throw new IllegalArgumentException("Not a concrete class implementing Messages, Requests or Responses: " + className);
+        }
+        return type;
+    }
+
+    private final class Registration implements Callable<Object> {
+        private final Class<?> type;
+        private final Map<Class<?>, Long> lookupNanos;
+
+        private Registration(final Class<?> type, final Map<Class<?>, Long> lookupNanos) {
+            this.type = type;
+            this.lookupNanos = lookupNanos;
+        }
+
+        @Override
+        public Object call() {
+            final long start = System.nanoTime();
+            final MethodRepository repository = MethodRepository.repositoryFor(type);
+            final GeneratedDispatcher dispatcher = GeneratedDispatchers.dispatcherFor(type);
+            if (InvocationMode.defaultMode() == InvocationMode.COMPILED) {
+                repository.compiledDispatcher();
+            }
+            final boolean dispatched = dispatcher != null || InvocationMode.defaultMode() == InvocationMode.COMPILED;
+            final long mapped = System.nanoTime();
+            registrationNanos.put(type, mapped - start);
+            if (!dispatched) {
+                warmUpLookups(repository);
+            }
+            lookupNanos.put(type, System.nanoTime() - mapped);
+            return null;
+        }
+
+        /**
+         * The message types are looked up in turn, so that lookups of two types or less hit the cache and those of more types miss it,
+         * just as when a delegate receives them.
+         */
+        private void warmUpLookups(final MethodRepository repository) {
+            final Class<?>[] messageTypes = repository.handlers().keySet().toArray(new Class<?>[0]);
+            final InlineCache inlineCache = new InlineCache();
+            for (int i = 0; i < lookupsPerType * messageTypes.length; ++i) {
+                inlineCache.methodFor(repository, messageTypes[i % messageTypes.length]);
+            }
+        }
+    }
+
+    /**
+     * Identifies the extension. Name this class in {@code akka.extensions} to load the extension when the actor system starts.
+     */
+    public static final class Provider extends AbstractExtensionId<DispatchWarmup> implements ExtensionIdProvider {
+
+        static final Provider INSTANCE = new Provider();
+
+        @Override
+        public Provider lookup() {
+            return INSTANCE;
+        }
+
+        @Override
+        public DispatchWarmup createExtension(final ExtendedActorSystem system) {
+            return new DispatchWarmup(system);
+        }
+    }
+}
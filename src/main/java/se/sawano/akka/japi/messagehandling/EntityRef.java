@@ -0,0 +1,293 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A reference to an entity of an {@link EntityRuntime}. Messages sent to an entity are queued and handled by its target one at a time, in
+ * the order they were sent. At most {@value #THROUGHPUT} messages are handled before the thread is handed over to other entities.
+ * <p>
+ * A failure of a method invoked by {@link #tell(Object)} is passed to the uncaught exception handler of the thread that handled the
+ * message, after which the entity goes on with its next message. The {@link CompletionStage} returned by an asynchronous method is not
+ * waited for, if it fails its failure is passed to the uncaught exception handler of the thread that completes it. Messages that are not
+ * handled by the target are counted as unhandled, see {@link MethodDelegate#unhandledCount(Class)}.
+ * </p>
+ * <p>
+ * Messages that are sent after the runtime of the entity is closed are rejected. Messages that are still queued when the entity can no
+ * longer be scheduled are dropped: the replies of asked messages are completed with a {@link RejectedExecutionException}, and the
+ * exception is passed to the uncaught exception handler if any told messages were dropped.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@ThreadSafe
+public final class EntityRef {
+
+    private static final int THROUGHPUT = 100;
+
+    private final MethodDelegate methodDelegate;
+    private final Executor executor;
+    private final boolean asyncHandlers;
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain = new Drain();
+
+    EntityRef(final MethodDelegate methodDelegate, final Executor executor) {
+        requireNonNull(methodDelegate);
+        requireNonNull(executor);
+
+        this.methodDelegate = methodDelegate;
+        this.executor = executor;
+        this.asyncHandlers = methodDelegate.hasAsyncHandlers();
+    }
+
+    /**
+     * @param message
+     *         the message to send
+     *
+     * @throws RejectedExecutionException
+     *         if the runtime of the entity is closed, in which case the message is not sent
+     */
+    public void tell(final Object message) {
+        requireNonNull(message);
+
+        enqueue(message);
+    }
+
+    /**
+     * Sends a message and returns the reply of the receiving method, i.e. its return value or the result of the {@link CompletionStage} it
+     * returns. The reply of a method that does not reply is {@code null}.
+     *
+     * @param message
+     *         the message to send
+     *
+     * @return a future that is completed with the reply, or exceptionally with the failure of the method or an {@link
+     * IllegalArgumentException} if the message is not handled
+     *
+     * @throws RejectedExecutionException
+     *         if the runtime of the entity is closed, in which case the message is not sent
+     */
+    public CompletableFuture<Object> ask(final Object message) {
+        requireNonNull(message);
+
+        final Ask ask = new Ask(message);
+        enqueue(ask);
+        return ask.reply;
+    }
+
+    /**
+     * An element that is rejected along with the drain task is removed again, so that it is not handled when a later element is sent.
+     */
+    private void enqueue(final Object element) {
+        if (executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown()) {
+            throw new RejectedExecutionException("The runtime of the entity is closed");
+        }
+        queue.add(element);
+        try {
+            schedule();
+        } catch (RejectedExecutionException e) {
+            remove(element);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the given element by identity, since an equal message may have been sent by another thread.
+     */
+    private void remove(final Object element) {
+        for (final Iterator<Object> elements = queue.iterator(); elements.hasNext(); ) {
+            if (elements.next() == element) {
+                elements.remove();
+                return;
+            }
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void handle(final Object message) {
+        if (message instanceof Ask) {
+            ((Ask) message).handleBy(methodDelegate);
+            return;
+        }
+        try {
+            if (asyncHandlers) {
+                deliver(methodDelegate.methodFor(message), message);
+            }
+            else {
+                methodDelegate.onReceive(message);
+            }
+        } catch (RuntimeException e) {
+            reportFailure(e);
+        }
+    }
+
+    private void deliver(final HandlerMethod method, final Object message) {
+        if (method == null) {
+            return;
+        }
+        final Object result = methodDelegate.deliver(method, message, false);
+        if (method.isAsync()) {
+            ((CompletionStage<?>) result).whenComplete(new FailureReport(method));
+        }
+    }
+
+    private static void reportFailure(final Throwable failure) {
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+    }
+
+    /**
+     * Drops the queued messages of an entity that can no longer be scheduled, e.g. since a message was sent just as its runtime was closed.
+     */
+    private void reject(final RejectedExecutionException rejection) {
+        boolean toldDropped = false;
+        for (Object element = queue.poll(); element != null; element = queue.poll()) {
+            if (element instanceof Ask) {
+                ((Ask) element).reply.completeExceptionally(rejection);
+            }
+            else {
+                toldDropped = true;
+            }
+        }
+        if (toldDropped) {
+            reportFailure(rejection);
+        }
+    }
+
+    private final class Drain implements Runnable {
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < THROUGHPUT; ++i) {
+                    final Object message = queue.poll();
+                    if (message == null) {
+                        break;
+                    }
+                    handle(message);
+                }
+            } finally {
+                scheduled.set(false);
+                if (!queue.isEmpty()) {
+                    try {
+                        schedule();
+                    } catch (RejectedExecutionException e) {
+                        reject(e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Ask {
+        private final Object message;
+        private final CompletableFuture<Object> reply = new CompletableFuture<>();
+
+        private Ask(final Object message) {
+            this.message = message;
+        }
+
+        private void handleBy(final MethodDelegate methodDelegate) {
+            try {
+                final HandlerMethod method = methodDelegate.methodFor(message);
+                if (method == null) {
+                    reply.completeExceptionally(new IllegalArgumentException("Unhandled message: " + message));
+                    return;
+                }
+                final Object result = methodDelegate.deliver(method, message, false);
+                if (method.isAsync()) {
+                    ((CompletionStage<?>) result).whenComplete(new Completion(reply));
+                }
+                else {
+                    reply.complete(result);
+                }
+            } catch (DelegateException e) {
+                reply.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            } catch (Throwable e) {
+                // Errors are rethrown as is by FailureMode.RETHROW, the reply must still be completed
+                reply.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final class FailureReport implements BiConsumer<Object, Throwable> {
+        private final HandlerMethod method;
+
+        private FailureReport(final HandlerMethod method) {
+            this.method = method;
+        }
+
+        @Override
+        public void accept(final Object result, final Throwable failure) {
+            if (failure == null) {
+                return;
+            }
+            final Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            Throwable reported;
+            try {
+                reported = methodDelegate.failureOf(cause, method);
+            } catch (Error e) {
+                reported = e;
+            }
+            reportFailure(reported);
+        }
+    }
+
+    private static final class Completion implements BiConsumer<Object, Throwable> {
+        private final CompletableFuture<Object> reply;
+
+        private Completion(final CompletableFuture<Object> reply) {
+            this.reply = reply;
+        }
+
+        @Override
+        public void accept(final Object result, final Throwable failure) {
+            if (failure == null) {
+                reply.complete(result);
+            }
+            else if (failure instanceof CompletionException && failure.getCause() != null) {
+                reply.completeExceptionally(failure.getCause());
+            }
+            else {
+                reply.completeExceptionally(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs targets of {@link MethodDelegate}s as entities, without an actor system. Each entity has a queue of its own and handles one message
+ * at a time, in the order they were sent, through the same contract mapping as an actor would. An entity only occupies a thread while it
+ * has messages to handle, so idle entities cost no more than their queue, and its methods may block, e.g. on I/O, without holding up other
+ * entities.
+ * <p>
+ * On Java 21 and later messages are handled on virtual threads, which makes blocking cheap enough to run very many I/O heavy entities. The
+ * virtual thread executor is looked up when this class is loaded, so the library itself still runs on Java 8, where a cached pool of
+ * platform threads is used instead. See {@link #virtualThreadsAvailable()}.
+ * </p>
+ * <pre>
+ * try (EntityRuntime runtime = EntityRuntime.create()) {
+ *     EntityRef account = runtime.spawn(new Account());
+ *     account.tell(new Deposit(100));
+ *     account.ask(new GetBalance()).thenAccept(...);
+ * } </pre>
+ *
+ * @author Daniel Sawano
+ * @see EntityRef
+ */
+@ThreadSafe
+public final class EntityRuntime implements AutoCloseable {
+
+    private static final MethodHandle VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private EntityRuntime(final ExecutorService executor, final boolean virtualThreads) {
+        this.executor = executor;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Creates a runtime that handles messages on virtual threads if they are available and on a cached pool of daemon threads otherwise.
+     *
+     * @return a new runtime
+     */
+    public static EntityRuntime create() {
+        final ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+        if (virtualThreadExecutor != null) {
+            return new EntityRuntime(virtualThreadExecutor, true);
+        }
+        return new EntityRuntime(Executors.newCachedThreadPool(new EntityThreadFactory()), false);
+    }
+
+    /**
+     * Creates a runtime that handles messages on the given executor. The executor is shut down when the runtime is closed.
+     *
+     * @param executor
+     *         the executor to handle messages on
+     *
+     * @return a new runtime
+     */
+    public static EntityRuntime create(final ExecutorService executor) {
+        requireNonNull(executor);
+
+        return new EntityRuntime(executor, false);
+    }
+
+    /**
+     * @return {@code true} if the Java runtime supports virtual threads, i.e. if runtimes created by {@link #create()} use them
+     */
+    public static boolean virtualThreadsAvailable() {
+        return VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an entity of the given target, using the default invocation mode.
+     *
+     * @param target
+     *         the target to delegate messages to
+     *
+     * @return a reference to send messages to the new entity with
+     *
+     * @see #spawn(Object, InvocationMode)
+     */
+    public EntityRef spawn(final Object target) {
+        return spawn(target, InvocationMode.defaultMode());
+    }
+
+    /**
+     * @param target
+     *         the target to delegate messages to
+     * @param invocationMode
+     *         how to invoke the methods of the target
+     *
+     * @return a reference to send messages to the new entity with
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the target
+     * @throws IllegalStateException
+     *         if unable to map the target
+     */
+    public EntityRef spawn(final Object target, final InvocationMode invocationMode) {
+        return new EntityRef(new MethodDelegate(target, invocationMode), executor);
+    }
+
+    /**
+     * @return {@code true} if this runtime handles messages on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Shuts down the executor of this runtime. Messages that are already being handled are handled to completion, later messages are
+     * rejected.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static MethodHandle virtualThreadExecutorFactory() {
+        try {
+            final MethodHandle factory = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                                                                                 methodType(ExecutorService.class));
+            return newVirtualThreadExecutor(factory) != null ? factory : null;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        return VIRTUAL_THREAD_EXECUTOR != null ? newVirtualThreadExecutor(VIRTUAL_THREAD_EXECUTOR) : null;
+    }
+
+    /**
+     * @return a new executor, or {@code null} if virtual threads are a disabled preview feature of the Java runtime
+     */
+    private static ExecutorService newVirtualThreadExecutor(final MethodHandle factory) {
+        try {
+            return (ExecutorService) factory.invokeExact();
+        } catch (UnsupportedOperationException e) {
+            return null;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static final class EntityThreadFactory implements ThreadFactory {
+        private static final AtomicInteger RUNTIMES = new AtomicInteger();
+        private final String prefix = "entity-runtime-" + RUNTIMES.incrementAndGet() + "-";
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, prefix + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
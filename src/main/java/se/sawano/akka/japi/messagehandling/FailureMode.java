@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Defines how a {@link MethodDelegate} reports exceptions thrown by the message receiving methods of its target.
+ * <p>
+ * The mode used by default can be set with the system property {@value #PROPERTY_NAME}, e.g. {@code
+ * -Dse.sawano.akka.japi.messagehandling.failureMode=RETHROW}. If not set, {@link #WRAP} is used. If the property does not name a mode,
+ * {@link #defaultMode()} throws an {@link IllegalArgumentException}, while explicitly given modes can still be used.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see MethodDelegate#MethodDelegate(Object, InvocationMode, int, FailureMode)
+ */
+public enum FailureMode {
+
+    /**
+     * Wraps exceptions in a {@link DelegateException} that carries the receiving method and the message type. The exception does not fill
+     * in a stack trace of its own, the stack trace of its cause tells where the failure happened.
+     */
+    WRAP {
+        @Override
+        RuntimeException failureOf(final String message, final Throwable cause, final Method handler, final Class<?> messageType) {
+            return new DelegateException(message, cause, handler, messageType);
+        }
+    },
+
+    /**
+     * Rethrows unchecked exceptions and errors as they are, e.g. to let the supervisor of an actor decide on the original exception.
+     * Checked exceptions are wrapped as in {@link #WRAP}.
+     */
+    RETHROW {
+        @Override
+        RuntimeException failureOf(final String message, final Throwable cause, final Method handler, final Class<?> messageType) {
+            if (cause instanceof RuntimeException) {
+                return (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return WRAP.failureOf(message, cause, handler, messageType);
+        }
+    };
+
+    /**
+     * Name of the system property used to select the default mode.
+     */
+    public static final String PROPERTY_NAME = "se.sawano.akka.japi.messagehandling.failureMode";
+
+    private static final String MESSAGE = "Exception while invoking target method";
+    private static final String LOOKUP_MESSAGE = "Exception while looking up target method";
+
+    private static final String DEFAULT_MODE_NAME = System.getProperty(PROPERTY_NAME, WRAP.name());
+
+    /**
+     * @return the mode to use when none is explicitly given
+     *
+     * @throws IllegalArgumentException
+     *         if the system property {@value #PROPERTY_NAME} does not name a mode
+     */
+    public static FailureMode defaultMode() {
+        return named(DEFAULT_MODE_NAME);
+    }
+
+    static FailureMode named(final String name) {
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value of system property " + PROPERTY_NAME + ": " + name + ", expected one of " +
+                                               Arrays.toString(values()), e);
+        }
+    }
+
+    /**
+     * @param cause
+     *         the exception thrown by the receiving method
+     * @param handler
+     *         the receiving method, or {@code null} if not known, e.g. when the message was dispatched by a generated dispatcher
+     * @param messageType
+     *         the type of the message
+     *
+     * @return the exception to throw
+     */
+    RuntimeException failureOf(final Throwable cause, final Method handler, final Class<?> messageType) {
+        return failureOf(MESSAGE, cause, handler, messageType);
+    }
+
+    /**
+     * @param cause
+     *         the exception thrown while looking up the receiving method of a message, e.g. because the message type is ambiguous
+     * @param messageType
+     *         the type of the message
+     *
+     * @return the exception to throw
+     */
+    RuntimeException lookupFailureOf(final RuntimeException cause, final Class<?> messageType) {
+        return failureOf(LOOKUP_MESSAGE, cause, null, messageType);
+    }
+
+    abstract RuntimeException failureOf(String message, Throwable cause, Method handler, Class<?> messageType);
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+/**
+ * Dispatcher for a single target class that is generated at compile time by the annotation processor in the {@code
+ * akka-message-java-processor} artifact. Generated dispatchers call the message receiving methods of their target class directly, without
+ * any reflection.
+ * <p>
+ * A generated dispatcher is found by name. It must be located in the same package as its target class, be named as the binary name of the
+ * target class followed by {@value #CLASS_NAME_SUFFIX}, and have a public no-arg constructor. E.g. the dispatcher for {@code
+ * com.example.Outer$Inner} is {@code com.example.Outer$Inner_Dispatcher}.
+ * </p>
+ * <p>
+ * There is normally no need to implement this interface by hand.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see InvocationMode#GENERATED
+ */
+public interface GeneratedDispatcher {
+
+    /**
+     * Suffix appended to the binary name of a target class to form the name of its generated dispatcher.
+     */
+    String CLASS_NAME_SUFFIX = "_Dispatcher";
+
+    /**
+     * Delegates a message to the target.
+     *
+     * @param target
+     *         the target to delegate to, an instance of the class this dispatcher was generated for
+     * @param message
+     *         the message to delegate, never {@code null}
+     *
+     * @return {@code true} if a matching method was found and the message was delegated to the target, {@code false} otherwise
+     *
+     * @throws Exception
+     *         any exception thrown by the target method
+     */
+    boolean dispatch(Object target, Object message) throws Exception;
+
+    /**
+     * Generated dispatchers do not dispatch to {@link Batch} methods, messages for them are left to the runtime mapping of the target class.
+     *
+     * @return {@code true} if the target class has any {@link Batch} methods
+     */
+    default boolean hasBatchHandlers() {
+        return false;
+    }
+
+    /**
+     * Generated dispatchers do not dispatch to request methods that reply with their return value, messages for them are left to the runtime
+     * mapping of the target class.
+     *
+     * @return {@code true} if the target class has any request methods that reply with their return value
+     */
+    default boolean hasReplyingHandlers() {
+        return false;
+    }
+
+    /**
+     * Generated dispatchers do not dispatch to {@link Blocking} or {@link Stateless} methods either.
+     *
+     * @return {@code true} if the target class has any blocking or stateless methods
+     */
+    default boolean hasOffloadedHandlers() {
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Locates the {@link GeneratedDispatcher}s of target classes. Whether a target class has a generated dispatcher or not is only looked up
+ * once per class.
+ *
+ * @author Daniel Sawano
+ */
+final class GeneratedDispatchers {
+
+    private static final GeneratedDispatcher NONE = new GeneratedDispatcher() {
+        @Override
+        public boolean dispatch(final Object target, final Object message) {
+            return false;
+        }
+    };
+
+    private static final ClassValue<GeneratedDispatcher> DISPATCHERS = new ClassValue<GeneratedDispatcher>() {
+        @Override
+        protected GeneratedDispatcher computeValue(final Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private GeneratedDispatchers() {
+    }
+
+    /**
+     * @param targetClass
+     *         the class to get the dispatcher for
+     *
+     * @return the generated dispatcher of the target class, or {@code null} if the class has none
+     *
+     * @throws IllegalStateException
+     *         if a generated dispatcher exists but cannot be instantiated
+     */
+    static GeneratedDispatcher dispatcherFor(final Class<?> targetClass) {
+        requireNonNull(targetClass);
+
+        final GeneratedDispatcher dispatcher = DISPATCHERS.get(targetClass);
+        return dispatcher == NONE ? null : dispatcher;
+    }
+
+    private static GeneratedDispatcher load(final Class<?> targetClass) {
+        final String dispatcherClassName = targetClass.getName() + GeneratedDispatcher.CLASS_NAME_SUFFIX;
+        final Class<?> dispatcherClass;
+        try {
+            dispatcherClass = Class.forName(dispatcherClassName, true, targetClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return NONE;
+        }
+        if (!GeneratedDispatcher.class.isAssignableFrom(dispatcherClass)) {
+            return NONE;
+        }
+        try {
+            return (GeneratedDispatcher) dispatcherClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to instantiate generated dispatcher: " + dispatcherClassName, e);
+        }
+    }
+}
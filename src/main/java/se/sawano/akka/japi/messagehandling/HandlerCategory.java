@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+/**
+ * The logical category of a message receiving method, given by the marker interface of the contract that declares it.
+ *
+ * @author Daniel Sawano
+ */
+enum HandlerCategory {
+
+    /**
+     * Declared by a {@link Requests} contract.
+     */
+    REQUEST,
+
+    /**
+     * Declared by a {@link Responses} contract.
+     */
+    RESPONSE,
+
+    /**
+     * Declared by a {@link Messages} contract.
+     */
+    MESSAGE
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Handler mappings resolved at build time. A manifest lists the mapped methods of every target class in a jar, or class directory, and is
+ * written by the {@code manifest} goal of {@code akka-message-java-maven-plugin} during {@code process-classes}, see {@link
+ * #write(Iterable, ClassLoader, OutputStream)}. A target class listed in a manifest on the class path of its class loader is mapped from
+ * its entry, which only looks up the listed methods, instead of by matching every declared method of the class against every method of
+ * its interfaces.
+ * <p>
+ * All manifests visible to a class loader are read once, the first time a class of that loader is mapped. An entry is only used if the
+ * class still implements the interfaces it was mapped with, with the same type arguments, and still declares the receiving methods with
+ * the same parameter types, including type arguments, and all listed types and methods can be found. Otherwise the class is mapped as if
+ * it was not listed, e.g. if it was recompiled without writing a new manifest. Reading manifests can be turned off with the system
+ * property {@value #PROPERTY_NAME}, e.g. {@code -Dse.sawano.akka.japi.messagehandling.manifest=false}.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@ThreadSafe
+public final class HandlerManifest {
+
+    /**
+     * Name of the resource that holds the manifest of a jar or class directory.
+     */
+    public static final String RESOURCE_NAME = "META-INF/akka-message-java/handlers.manifest";
+
+    /**
+     * Name of the system property that turns reading manifests on or off. Manifests are read unless it is {@code false}.
+     */
+    public static final String PROPERTY_NAME = "se.sawano.akka.japi.messagehandling.manifest";
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(PROPERTY_NAME, "true"));
+
+    private static final int MAGIC = 0x414d4a4d;
+    private static final short VERSION = 2;
+
+    /**
+     * The entries of all manifests visible to a class loader, by class name. Entries only hold names, so they do not keep the class loader
+     * reachable.
+     */
+    private static final Map<ClassLoader, Map<String, Entry>> ENTRIES = Collections.synchronizedMap(new WeakHashMap<ClassLoader, Map<String,
+            Entry>>());
+
+    private HandlerManifest() {
+    }
+
+    /**
+     * Maps the given classes and writes a manifest of those that are targets. Classes are mapped exactly as they are at runtime, so a class
+     * that cannot be mapped fails the write. Classes that cannot be loaded or linked, e.g. since an optional dependency is missing, are
+     * skipped.
+     *
+     * @param classNames
+     *         the names of the classes to list, in the order they should be written
+     * @param classLoader
+     *         the class loader to load the classes with. Classes are not initialized.
+     * @param out
+     *         the stream to write the manifest to. It is flushed but not closed.
+     *
+     * @return the number of target classes written
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map a target class
+     * @throws IllegalStateException
+     *         if unable to map a target class
+     * @throws IOException
+     *         if unable to write the manifest
+     */
+    public static int write(final Iterable<String> classNames, final ClassLoader classLoader, final OutputStream out) throws IOException {
+        requireNonNull(classNames);
+        requireNonNull(classLoader);
+        requireNonNull(out);
+
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final List<int[]> classes = new ArrayList<>();
+        for (final String className : classNames) {
+            final Class<?> type = load(className, classLoader);
+            if (type != null && TargetScanner.isTarget(type)) {
+                classes.add(entryOf(type, MethodRepository.scanned(type), strings));
+            }
+        }
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeInt(strings.size());
+        for (final String string : strings.keySet()) {
+            data.writeUTF(string);
+        }
+        data.writeInt(classes.size());
+        for (final int[] entry : classes) {
+            for (final int value : entry) {
+                data.writeInt(value);
+            }
+        }
+        data.flush();
+        return classes.size();
+    }
+
+    private static Class<?> load(final String className, final ClassLoader classLoader) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * An entry is written as the target class name, the number of interfaces and their names with type arguments, and the number of methods
+     * followed by the declaring interface, name, parameter type, parameter type of the receiving method of the target class with type
+     * arguments, message type, category and maximum batch size of each. Names are indexes into the string table of the manifest.
+     */
+    private static int[] entryOf(final Class<?> type, final MethodRepository repository, final Map<String, Integer> strings) {
+        final Type[] interfaces = type.getGenericInterfaces();
+        final Map<Class<?>, HandlerMethod> handlers = repository.handlers();
+        final Method[] targetMethods = type.getDeclaredMethods();
+        final int[] entry = new int[3 + interfaces.length + handlers.size() * 7];
+        int i = 0;
+        entry[i++] = indexOf(type.getName(), strings);
+        entry[i++] = interfaces.length;
+        for (final Type interfaceType : interfaces) {
+            entry[i++] = indexOf(interfaceType.getTypeName(), strings);
+        }
+        entry[i++] = handlers.size();
+        for (final HandlerMethod handler : handlers.values()) {
+            final Method method = handler.method();
+            entry[i++] = indexOf(method.getDeclaringClass().getName(), strings);
+            entry[i++] = indexOf(method.getName(), strings);
+            entry[i++] = indexOf(method.getParameterTypes()[0].getName(), strings);
+            entry[i++] = indexOf(targetMethodOf(handler, targetMethods).getGenericParameterTypes()[0].getTypeName(), strings);
+            entry[i++] = indexOf(handler.messageType().getName(), strings);
+            entry[i++] = handler.category().ordinal();
+            entry[i++] = handler.maxBatchSize();
+        }
+        return entry;
+    }
+
+    /**
+     * @return the method of the target class that receives the messages of the given handler, i.e. the method that takes the message type,
+     * or a list for a batch method, as opposed to a bridge method
+     */
+    private static Method targetMethodOf(final HandlerMethod handler, final Method[] targetMethods) {
+        final Class<?> parameterType = handler.isBatch() ? List.class : handler.messageType();
+        for (final Method targetMethod : targetMethods) {
+            if (!targetMethod.isBridge() && targetMethod.getName().equals(handler.method().getName()) &&
+                targetMethod.getParameterCount() == 1 && targetMethod.getParameterTypes()[0] == parameterType) {
+                return targetMethod;
+            }
+        }
+        throw new IllegalStateException("Unable to find target method for: " + handler.method());
+    }
+
+    private static int indexOf(final String string, final Map<String, Integer> strings) {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return the methods of the given class as listed in a manifest, in the order they were mapped, or {@code null} if the class is not
+     * listed or its entry cannot be used
+     *
+     * @throws IllegalStateException
+     *         if unable to read a manifest
+     */
+    static List<HandlerMethod> handlersOf(final Class<?> targetClass) {
+        final ClassLoader classLoader = targetClass.getClassLoader();
+        if (!ENABLED || classLoader == null) {
+            return null;
+        }
+        final Entry entry = entriesOf(classLoader).get(targetClass.getName());
+        return entry == null ? null : handlersOf(targetClass, entry);
+    }
+
+    /**
+     * Reading the manifests of the same class loader more than once in a race is harmless since the entries are equivalent.
+     */
+    static Map<String, Entry> entriesOf(final ClassLoader classLoader) {
+        Map<String, Entry> entries = ENTRIES.get(classLoader);
+        if (entries == null) {
+            entries = readAll(classLoader);
+            ENTRIES.put(classLoader, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * If a class is listed in more than one manifest, the entry of the manifest first on the class path is used, just like the class itself
+     * is loaded from the first class path entry that has it.
+     */
+    private static Map<String, Entry> readAll(final ClassLoader classLoader) {
+        final Map<String, Entry> entries = new HashMap<>();
+        try {
+            final Enumeration<URL> resources = classLoader.getResources(RESOURCE_NAME);
+            while (resources.hasMoreElements()) {
+                final URL resource = resources.nextElement();
+                for (final Entry entry : read(resource).values()) {
+                    if (!entries.containsKey(entry.className)) {
+                        entries.put(entry.className, entry);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read handler manifests of class loader: " + classLoader, e);
+        }
+        return entries;
+    }
+
+    /**
+     * The resource is read through the cached jar file that its class loader already has open. Closing the stream only closes the entry.
+     */
+    private static Map<String, Entry> read(final URL resource) throws IOException {
+        try (InputStream in = resource.openStream()) {
+            return read(in);
+        } catch (IOException e) {
+            throw new IOException("Unable to read handler manifest: " + resource, e);
+        }
+    }
+
+    /**
+     * @return the entries of the manifest by class name, or no entries if the manifest has an unknown format, e.g. since it was written by
+     * a later version
+     */
+    static Map<String, Entry> read(final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC || data.readShort() != VERSION) {
+            return Collections.emptyMap();
+        }
+        final String[] strings = new String[data.readInt()];
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = data.readUTF();
+        }
+        final int numberOfClasses = data.readInt();
+        final Map<String, Entry> entries = new LinkedHashMap<>(numberOfClasses * 2);
+        for (int i = 0; i < numberOfClasses; ++i) {
+            final Entry entry = Entry.read(data, strings);
+            entries.put(entry.className, entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Listed interfaces and methods are found by name among the interfaces of the class, rather than loaded by name, since finding a class
+     * by name through its class loader costs more than reflecting on classes that are already loaded. Only message types that are not the
+     * parameter type of their receiving method are loaded by name. The type arguments of the interfaces and of the parameters of the
+     * receiving methods are compared by name, so that an entry written before the message types of the class were changed is not used.
+     *
+     * @return the methods listed in the entry, or {@code null} if the class no longer implements the interfaces it was mapped with, no
+     * longer declares the receiving methods it was mapped with, or a listed type or method cannot be found
+     */
+    static List<HandlerMethod> handlersOf(final Class<?> targetClass, final Entry entry) {
+        final Class<?>[] interfaces = targetClass.getInterfaces();
+        if (interfaces.length != entry.interfaceNames.length) {
+            return null;
+        }
+        final Type[] genericInterfaces = targetClass.getGenericInterfaces();
+        final Map<String, Class<?>> interfacesByName = new HashMap<>();
+        for (int i = 0; i < interfaces.length; ++i) {
+            if (!genericInterfaces[i].getTypeName().equals(entry.interfaceNames[i])) {
+                return null;
+            }
+            addInterfaces(interfaces[i], interfacesByName);
+        }
+        final Map<Class<?>, Method[]> declaredMethods = new HashMap<>();
+        final List<HandlerMethod> handlers = new ArrayList<>(entry.methods.length);
+        try {
+            for (final MethodEntry listed : entry.methods) {
+                final Class<?> declaringClass = interfacesByName.get(listed.declaringClassName);
+                final Method method = declaringClass == null ? null : listed.findIn(declaringClass, declaredMethods);
+                final Method targetMethod = method == null ? null : listed.findTargetIn(targetClass, declaredMethods);
+                if (targetMethod == null) {
+                    return null;
+                }
+                final Class<?> parameterType = targetMethod.getParameterTypes()[0];
+                final Class<?> messageType = parameterType.getName().equals(listed.messageTypeName) ? parameterType : Class.forName(
+                        listed.messageTypeName, false, targetClass.getClassLoader());
+                handlers.add(new HandlerMethod(method, messageType, listed.category, listed.maxBatchSize));
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        return handlers;
+    }
+
+    private static void addInterfaces(final Class<?> interfaceClass, final Map<String, Class<?>> interfacesByName) {
+        if (interfacesByName.put(interfaceClass.getName(), interfaceClass) == null) {
+            for (final Class<?> superInterface : interfaceClass.getInterfaces()) {
+                addInterfaces(superInterface, interfacesByName);
+            }
+        }
+    }
+
+    /**
+     * The listed interfaces and methods of a target class.
+     */
+    static final class Entry {
+        private final String className;
+        private final String[] interfaceNames;
+        private final MethodEntry[] methods;
+
+        private Entry(final String className, final String[] interfaceNames, final MethodEntry[] methods) {
+            this.className = className;
+            this.interfaceNames = interfaceNames;
+            this.methods = methods;
+        }
+
+        private static Entry read(final DataInputStream data, final String[] strings) throws IOException {
+            final String className = strings[data.readInt()];
+            final String[] interfaceNames = new String[data.readInt()];
+            for (int i = 0; i < interfaceNames.length; ++i) {
+                interfaceNames[i] = strings[data.readInt()];
+            }
+            final MethodEntry[] methods = new MethodEntry[data.readInt()];
+            for (int i = 0; i < methods.length; ++i) {
+                methods[i] = new MethodEntry(strings[data.readInt()], strings[data.readInt()], strings[data.readInt()], strings[data
+                        .readInt()], strings[data.readInt()], HandlerCategory.values()[data.readInt()], data.readInt());
+            }
+            return new Entry(className, interfaceNames, methods);
+        }
+    }
+
+    private static final class MethodEntry {
+        private final String declaringClassName;
+        private final String name;
+        private final String parameterTypeName;
+        private final String targetParameterTypeName;
+        private final String messageTypeName;
+        private final HandlerCategory category;
+        private final int maxBatchSize;
+
+        private MethodEntry(final String declaringClassName, final String name, final String parameterTypeName,
+                            final String targetParameterTypeName, final String messageTypeName, final HandlerCategory category,
+                            final int maxBatchSize) {
+            this.declaringClassName = declaringClassName;
+            this.name = name;
+            this.parameterTypeName = parameterTypeName;
+            this.targetParameterTypeName = targetParameterTypeName;
+            this.messageTypeName = messageTypeName;
+            this.category = category;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        private Method findIn(final Class<?> declaringClass, final Map<Class<?>, Method[]> declaredMethods) {
+            for (final Method method : declaredMethodsOf(declaringClass, declaredMethods)) {
+                if (method.getName().equals(name) && method.getParameterCount() == 1 && method.getParameterTypes()[0].getName().equals(
+                        parameterTypeName)) {
+                    return method;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Only the generic parameter types of methods whose parameter type has type arguments are parsed.
+         */
+        private Method findTargetIn(final Class<?> targetClass, final Map<Class<?>, Method[]> declaredMethods) {
+            final boolean generic = targetParameterTypeName.indexOf('<') >= 0;
+            for (final Method method : declaredMethodsOf(targetClass, declaredMethods)) {
+                if (!method.isBridge() && method.getName().equals(name) && method.getParameterCount() == 1 &&
+                    targetParameterTypeName.equals(generic ? method.getGenericParameterTypes()[0].getTypeName()
+                                                           : method.getParameterTypes()[0].getTypeName())) {
+                    return method;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * The declared methods of each class are only fetched once since {@link Class#getDeclaredMethods()} returns a copy.
+         */
+        private static Method[] declaredMethodsOf(final Class<?> type, final Map<Class<?>, Method[]> declaredMethods) {
+            Method[] methods = declaredMethods.get(type);
+            if (methods == null) {
+                methods = type.getDeclaredMethods();
+                declaredMethods.put(type, methods);
+            }
+            return methods;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A message receiving method registered in a {@link MethodRepository}. The method is bound to a {@link MethodHandle} once, when it is
+ * registered, so that invoking it does not pay for access checks or argument array allocation on every message. The handle is a field, not
+ * a constant, so invoking it is an indirect call that the JIT does not inline.
+ * <p>
+ * A {@link Batch} method is mapped to the element type of its list parameter. It can be invoked both with a single message, which is then
+ * passed on in a list of its own, and with a whole batch, see {@link #invokeBatch(Object, List)}.
+ * </p>
+ * <p>
+ * A {@link Requests} method that is not a batch method and does not return {@code void} replies with its return value, which is returned
+ * by {@link #invokeForReply(Object, Object)}. If it returns a {@link CompletionStage} it is asynchronous and replies with the result of the
+ * stage. The return values of other methods are ignored.
+ * </p>
+ * <p>
+ * {@link Blocking} and {@link Stateless} methods are offloaded, i.e. they know the dispatcher they are to be invoked on, see {@link
+ * #offloadDispatcher()}.
+ * </p>
+ * <p>
+ * Apart from its {@link HandlerMetrics}, which are only set once metrics are turned on for the target class, a method is immutable.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@ThreadSafe
+final class HandlerMethod {
+
+    private static final MethodType INVOKER_TYPE = methodType(void.class, Object.class, Object.class);
+    private static final MethodType REPLY_INVOKER_TYPE = methodType(Object.class, Object.class, Object.class);
+    private static final MethodHandle SINGLETON_LIST;
+
+    static {
+        try {
+            SINGLETON_LIST = MethodHandles.lookup().findStatic(Collections.class, "singletonList", methodType(List.class, Object.class))
+                                          .asType(methodType(Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Method method;
+    private final Class<?> messageType;
+    private final HandlerCategory category;
+    private final int maxBatchSize;
+    private final MethodHandle batchInvoker;
+    private final MethodHandle invoker;
+    private final MethodHandle replyInvoker;
+    private final boolean async;
+    private final String offloadDispatcher;
+    private final boolean sequential;
+    private volatile HandlerMetrics metrics;
+
+    HandlerMethod(final Method method, final Class<?> messageType, final HandlerCategory category) {
+        this(method, messageType, category, 0);
+    }
+
+    /**
+     * @param maxBatchSize
+     *         the maximum number of messages per invocation if this is a batch method, {@code 0} otherwise
+     */
+    HandlerMethod(final Method method, final Class<?> messageType, final HandlerCategory category, final int maxBatchSize) {
+        requireNonNull(method);
+        requireNonNull(messageType);
+        requireNonNull(category);
+
+        method.setAccessible(true);
+        this.method = method;
+        this.messageType = messageType;
+        this.category = category;
+        this.maxBatchSize = maxBatchSize;
+        this.batchInvoker = maxBatchSize > 0 ? invokerFor(method) : null;
+        this.invoker = maxBatchSize > 0 ? MethodHandles.filterArguments(batchInvoker, 1, SINGLETON_LIST) : invokerFor(method);
+        this.replyInvoker = isReplying(method, category, maxBatchSize) ? invokerFor(method, REPLY_INVOKER_TYPE) : null;
+        this.async = replyInvoker != null && isAsync(method);
+        this.offloadDispatcher = offloadDispatcherOf(method);
+        final Blocking blocking = method.getAnnotation(Blocking.class);
+        this.sequential = blocking != null && !blocking.concurrent();
+    }
+
+    private static String offloadDispatcherOf(final Method method) {
+        final Blocking blocking = method.getAnnotation(Blocking.class);
+        if (blocking != null) {
+            return blocking.dispatcher().isEmpty() ? Blocking.DEFAULT_DISPATCHER : blocking.dispatcher();
+        }
+        final Stateless stateless = method.getAnnotation(Stateless.class);
+        if (stateless != null) {
+            return stateless.dispatcher().isEmpty() ? Stateless.DEFAULT_DISPATCHER : stateless.dispatcher();
+        }
+        return null;
+    }
+
+    private static boolean isReplying(final Method method, final HandlerCategory category, final int maxBatchSize) {
+        return category == HandlerCategory.REQUEST && maxBatchSize == 0 && method.getReturnType() != void.class;
+    }
+
+    static boolean isAsync(final Method method) {
+        return CompletionStage.class.isAssignableFrom(method.getReturnType());
+    }
+
+    private static MethodHandle invokerFor(final Method method) {
+        return invokerFor(method, INVOKER_TYPE);
+    }
+
+    private static MethodHandle invokerFor(final Method method, final MethodType type) {
+        try {
+            return MethodHandles.lookup().unreflect(method).asType(type);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access method: " + method, e);
+        }
+    }
+
+    Method method() {
+        return method;
+    }
+
+    /**
+     * @return the message type this method is mapped to
+     */
+    Class<?> messageType() {
+        return messageType;
+    }
+
+    HandlerCategory category() {
+        return category;
+    }
+
+    boolean isBatch() {
+        return maxBatchSize > 0;
+    }
+
+    /**
+     * @return the maximum number of messages per invocation of a batch method, {@code 0} if this is not a batch method
+     */
+    int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return {@code true} if the return value of this method is a reply to the sender of the message
+     */
+    boolean isReplying() {
+        return replyInvoker != null;
+    }
+
+    /**
+     * @return {@code true} if this method replies with the result of a {@link CompletionStage}
+     */
+    boolean isAsync() {
+        return async;
+    }
+
+    boolean isOffloaded() {
+        return offloadDispatcher != null;
+    }
+
+    /**
+     * @return {@code true} if this is a {@link Blocking} method whose invocations for one actor run one at a time, in order
+     */
+    boolean isSequential() {
+        return sequential;
+    }
+
+    /**
+     * @return the id of the dispatcher to invoke an offloaded method on, {@code null} if this method is invoked by the actor itself
+     */
+    String offloadDispatcher() {
+        return offloadDispatcher;
+    }
+
+    /**
+     * @return a handle of type {@code (Object, Object)void} that invokes this method with a target and a message
+     */
+    MethodHandle invoker() {
+        return invoker;
+    }
+
+    /**
+     * @return the metrics of this method, or {@code null} if metrics are not recorded for the target class
+     */
+    HandlerMetrics metrics() {
+        return metrics;
+    }
+
+    void setMetrics(final HandlerMetrics metrics) {
+        requireNonNull(metrics);
+
+        this.metrics = metrics;
+    }
+
+    void invoke(final Object target, final Object message) throws Throwable {
+        invoker.invokeExact(target, message);
+    }
+
+    /**
+     * Exceptions thrown by the method are rethrown as they are, not wrapped in an {@link InvocationTargetException}.
+     */
+    void invokeReflectively(final Object target, final Object message) throws Throwable {
+        try {
+            method.invoke(target, isBatch() ? Collections.singletonList(message) : message);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the reply returned by a replying method, or the stage of an asynchronous one
+     */
+    Object invokeForReply(final Object target, final Object message) throws Throwable {
+        return replyInvoker.invokeExact(target, message);
+    }
+
+    void invokeBatch(final Object target, final List<?> messages) throws Throwable {
+        batchInvoker.invokeExact(target, (Object) messages);
+    }
+
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.ThreadSafe;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Invocation metrics of a single message receiving method of a target class, shared by all delegates of that class. Counts are kept in
+ * {@link LongAdder}s and latencies in a {@link LatencyHistogram}, so delegates in different actors can record concurrently without
+ * contending on a lock.
+ *
+ * @author Daniel Sawano
+ */
+@ThreadSafe
+final class HandlerMetrics implements HandlerMetricsMBean {
+
+    private final String targetClassName;
+    private final String handler;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    HandlerMetrics(final Class<?> targetClass, final HandlerMethod method) {
+        requireNonNull(targetClass);
+        requireNonNull(method);
+
+        this.targetClassName = targetClass.getName();
+        this.handler = method.method().getName() + "(" + method.messageType().getName() + ")";
+    }
+
+    /**
+     * @param failed
+     *         if the invocation threw an exception
+     * @param latencyNanos
+     *         the latency of the invocation, or a negative value if it was not sampled
+     */
+    void record(final boolean failed, final long latencyNanos) {
+        invocations.increment();
+        if (failed) {
+            failures.increment();
+        }
+        if (latencyNanos >= 0) {
+            latencies.record(latencyNanos);
+        }
+    }
+
+    HandlerMetricsSnapshot snapshot() {
+        return new HandlerMetricsSnapshot(targetClassName, handler, invocations.sum(), failures.sum(), latencies.counts());
+    }
+
+    ObjectName objectName() {
+        try {
+            return new ObjectName(InvocationMetrics.JMX_DOMAIN + ":type=HandlerMetrics,target=" + ObjectName.quote(targetClassName) +
+                                  ",handler=" + ObjectName.quote(handler));
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException("Unable to create MBean name for: " + this, e);
+        }
+    }
+
+    @Override
+    public String getTargetClassName() {
+        return targetClassName;
+    }
+
+    @Override
+    public String getHandler() {
+        return handler;
+    }
+
+    @Override
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getSampledInvocations() {
+        return snapshot().sampledInvocations();
+    }
+
+    @Override
+    public long getMedianLatency() {
+        return snapshot().latencyNanos(0.5);
+    }
+
+    @Override
+    public long get90thPercentileLatency() {
+        return snapshot().latencyNanos(0.9);
+    }
+
+    @Override
+    public long get99thPercentileLatency() {
+        return snapshot().latencyNanos(0.99);
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return snapshot().maxLatencyNanos();
+    }
+
+    @Override
+    public String toString() {
+        return targetClassName + "." + handler;
+    }
+}
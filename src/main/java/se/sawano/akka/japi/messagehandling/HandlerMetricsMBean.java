@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+/**
+ * Management interface of the invocation metrics of a single message receiving method. One MBean per method is registered with the platform
+ * MBean server under the name {@code se.sawano.akka.japi.messagehandling:type=HandlerMetrics,target=<class>,handler=<method>}. All
+ * latencies are in nanoseconds.
+ *
+ * @author Daniel Sawano
+ * @see InvocationMetrics
+ */
+public interface HandlerMetricsMBean {
+
+    String getTargetClassName();
+
+    String getHandler();
+
+    long getInvocations();
+
+    long getFailures();
+
+    long getSampledInvocations();
+
+    long getMedianLatency();
+
+    long get90thPercentileLatency();
+
+    long get99thPercentileLatency();
+
+    long getMaxLatency();
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.Immutable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The invocation metrics of a single message receiving method at some point in time. Latencies are only measured for sampled invocations,
+ * see {@link InvocationMetrics}, and are reported as the upper bound of the histogram bucket they were recorded in.
+ *
+ * @author Daniel Sawano
+ * @see InvocationMetrics#snapshot()
+ */
+@Immutable
+public final class HandlerMetricsSnapshot {
+
+    private final String targetClassName;
+    private final String handler;
+    private final long invocations;
+    private final long failures;
+    private final long[] latencyCounts;
+    private final long sampledInvocations;
+
+    HandlerMetricsSnapshot(final String targetClassName, final String handler, final long invocations, final long failures,
+                           final long[] latencyCounts) {
+        requireNonNull(targetClassName);
+        requireNonNull(handler);
+        requireNonNull(latencyCounts);
+
+        this.targetClassName = targetClassName;
+        this.handler = handler;
+        this.invocations = invocations;
+        this.failures = failures;
+        this.latencyCounts = latencyCounts;
+        this.sampledInvocations = sum(latencyCounts);
+    }
+
+    private static long sum(final long[] counts) {
+        long sum = 0;
+        for (final long count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the name of the class whose method this is
+     */
+    public String targetClassName() {
+        return targetClassName;
+    }
+
+    /**
+     * @return the name and parameter type of the method, e.g. {@code onMessage(java.lang.String)}
+     */
+    public String handler() {
+        return handler;
+    }
+
+    /**
+     * @return the number of times the method was invoked, including failed invocations
+     */
+    public long invocations() {
+        return invocations;
+    }
+
+    /**
+     * @return the number of invocations that threw an exception, i.e. that made the delegate throw a {@link DelegateException}
+     */
+    public long failures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of invocations whose latency was measured
+     */
+    public long sampledInvocations() {
+        return sampledInvocations;
+    }
+
+    /**
+     * Returns the latency that the given fraction of the sampled invocations did not exceed, e.g. {@code latencyNanos(0.99)} for the 99th
+     * percentile.
+     *
+     * @param quantile
+     *         a value between 0 and 1
+     *
+     * @return the latency in nanoseconds, or 0 if no invocation was sampled
+     *
+     * @throws IllegalArgumentException
+     *         if the quantile is not between 0 and 1
+     */
+    public long latencyNanos(final double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1. Was: " + quantile);
+        }
+        if (sampledInvocations == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * sampledInvocations));
+        long seen = 0;
+        for (int bucket = 0; bucket < latencyCounts.length; ++bucket) {
+            seen += latencyCounts[bucket];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValueOf(bucket);
+            }
+        }
+        return maxLatencyNanos();
+    }
+
+    /**
+     * @return the highest sampled latency in nanoseconds, or 0 if no invocation was sampled
+     */
+    public long maxLatencyNanos() {
+        for (int bucket = latencyCounts.length - 1; bucket >= 0; --bucket) {
+            if (latencyCounts[bucket] > 0) {
+                return LatencyHistogram.highestValueOf(bucket);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return targetClassName + "." + handler + ": invocations=" + invocations + ", failures=" + failures + ", p50=" + latencyNanos(0.5) +
+               "ns, p99=" + latencyNanos(0.99) + "ns, max=" + maxLatencyNanos() + "ns";
+    }
+}
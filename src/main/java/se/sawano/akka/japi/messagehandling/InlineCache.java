@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.NotThreadSafe;
+import se.sawano.akka.japi.messagehandling.MethodRepository.Resolution;
+
+/**
+ * Remembers the methods of the last two message classes that a single delegate received, so that a run of messages of the same one or two
+ * classes can skip the lookup in the {@link MethodRepository}. Methods are remembered by the class of the message, so a message that is
+ * received by the method of a supertype is as cheap to dispatch as one whose class is mapped exactly. Unhandled messages always go to the
+ * repository, so that they are counted.
+ * <p>
+ * The cache is meant to be used by one thread at a time, as within an actor. Its fields are plain fields, and its hit and miss counters
+ * are only exact under that condition. Each entry is the immutable {@link MethodRepository.Resolution} of a message class, which pairs the
+ * class with its method, so even a cache that is used by several threads can never pair a class with the wrong method. Resolutions are
+ * created once per message class by the repository, so a miss only swaps references and never allocates, even when three or more message
+ * classes alternate.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@NotThreadSafe
+final class InlineCache {
+
+    private Resolution first;
+    private Resolution second;
+    private long hits;
+    private long misses;
+
+    HandlerMethod methodFor(final MethodRepository repository, final Class<?> messageClass) {
+        final Resolution first = this.first;
+        if (first != null && first.messageClass() == messageClass) {
+            ++hits;
+            return first.method();
+        }
+        final Resolution second = this.second;
+        if (second != null && second.messageClass() == messageClass) {
+            ++hits;
+            return second.method();
+        }
+        ++misses;
+        final Resolution resolution = repository.resolutionFor(messageClass);
+        if (resolution.method() != null) {
+            this.second = first;
+            this.first = resolution;
+        }
+        return resolution.method();
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+}
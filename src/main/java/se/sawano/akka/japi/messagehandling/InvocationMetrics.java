@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.ThreadSafe;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Per method invocation metrics of the targets of {@link MethodDelegate}s. Metrics are off by default. They are turned on for all delegates
+ * by setting the system property {@value #SAMPLE_RATE_PROPERTY}, or for a single delegate with {@link MethodDelegate#MethodDelegate(Object,
+ * InvocationMode, int)}.
+ * <p>
+ * The sample rate is the number of invocations per measured latency. With a rate of {@code 1} every invocation is timed, with a rate of
+ * {@code 100} every hundredth invocation of each delegate is. Invocations and failures are always counted. A rate of {@code 0} turns
+ * metrics off. Delegates that record metrics look up the receiving method of every message, so they do not use generated or compiled
+ * dispatchers.
+ * </p>
+ * <p>
+ * Metrics are kept per target class and method, and are both available from {@link #snapshot()} and registered as a {@link
+ * HandlerMetricsMBean} with the platform MBean server. They are created the first time a delegate that records metrics is created for a
+ * target class. Metrics are kept by class name, so a class that is redeployed starts over with new metrics.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@ThreadSafe
+public final class InvocationMetrics {
+
+    /**
+     * Name of the system property used to set the default sample rate.
+     */
+    public static final String SAMPLE_RATE_PROPERTY = "se.sawano.akka.japi.messagehandling.metrics.sampleRate";
+
+    /**
+     * The JMX domain the metrics are registered in.
+     */
+    public static final String JMX_DOMAIN = "se.sawano.akka.japi.messagehandling";
+
+    private static final int DEFAULT_SAMPLE_RATE = requireValidSampleRate(Integer.getInteger(SAMPLE_RATE_PROPERTY, 0));
+
+    /**
+     * Keyed by class name rather than by class so that the metrics do not keep target classes from being unloaded.
+     */
+    private static final ConcurrentHashMap<String, List<HandlerMetrics>> METRICS = new ConcurrentHashMap<>();
+
+    private InvocationMetrics() {
+    }
+
+    /**
+     * @return the sample rate to use when none is explicitly given, {@code 0} if metrics are off by default
+     */
+    public static int defaultSampleRate() {
+        return DEFAULT_SAMPLE_RATE;
+    }
+
+    /**
+     * @return the current metrics of all methods of all target classes that metrics are recorded for
+     */
+    public static List<HandlerMetricsSnapshot> snapshot() {
+        final List<HandlerMetricsSnapshot> snapshots = new ArrayList<>();
+        for (final List<HandlerMetrics> metrics : METRICS.values()) {
+            addSnapshots(metrics, snapshots);
+        }
+        return snapshots;
+    }
+
+    /**
+     * @param targetClass
+     *         the class to get the metrics for
+     *
+     * @return the current metrics of all methods of the given target class, in the order they were mapped. The list is empty if no metrics
+     * are recorded for the class.
+     */
+    public static List<HandlerMetricsSnapshot> snapshot(final Class<?> targetClass) {
+        requireNonNull(targetClass);
+
+        final List<HandlerMetrics> metrics = METRICS.get(targetClass.getName());
+        if (metrics == null) {
+            return Collections.emptyList();
+        }
+        final List<HandlerMetricsSnapshot> snapshots = new ArrayList<>(metrics.size());
+        addSnapshots(metrics, snapshots);
+        return snapshots;
+    }
+
+    private static void addSnapshots(final List<HandlerMetrics> metrics, final List<HandlerMetricsSnapshot> snapshots) {
+        for (final HandlerMetrics handlerMetrics : metrics) {
+            snapshots.add(handlerMetrics.snapshot());
+        }
+    }
+
+    static int requireValidSampleRate(final int sampleRate) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("Sample rate cannot be negative. Was: " + sampleRate);
+        }
+        return sampleRate;
+    }
+
+    /**
+     * Makes the metrics of a target class available, replacing any metrics of a previously loaded class with the same name.
+     *
+     * @throws IllegalStateException
+     *         if unable to register the metrics with the MBean server
+     */
+    static void register(final Class<?> targetClass, final List<HandlerMetrics> metrics) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (final HandlerMetrics handlerMetrics : metrics) {
+                final ObjectName name = handlerMetrics.objectName();
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(new StandardMBean(handlerMetrics, HandlerMetricsMBean.class), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics for target class: " + targetClass, e);
+        }
+        METRICS.put(targetClass.getName(), Collections.unmodifiableList(new ArrayList<>(metrics)));
+    }
+}
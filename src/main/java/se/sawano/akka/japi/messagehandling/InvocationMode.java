@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import java.util.Arrays;
+
+/**
+ * Defines how a {@link MethodDelegate} invokes the message receiving methods of its target.
+ * <p>
+ * The mode used by default can be set with the system property {@value #PROPERTY_NAME}, e.g. {@code
+ * -Dse.sawano.akka.japi.messagehandling.invocationMode=REFLECTION}. If not set, {@link #GENERATED} is used. If the property does not name
+ * a mode, {@link #defaultMode()} throws an {@link IllegalArgumentException}, while explicitly given modes can still be used.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see MethodDelegate#MethodDelegate(Object, InvocationMode)
+ */
+public enum InvocationMode {
+
+    /**
+     * Dispatches messages through the {@link GeneratedDispatcher} of the target class, if the class has one. Such dispatchers are
+     * generated at compile time by the annotation processor in the {@code akka-message-java-processor} artifact. The target class is then
+     * never scanned at runtime, unless it receives a message whose class is not mapped exactly. Such messages, and all messages to targets
+     * without a generated dispatcher, are handled as in {@link #METHOD_HANDLE}.
+     */
+    GENERATED,
+
+    /**
+     * Invokes methods through method handles that are bound once per target class. This avoids the access checks of reflection and
+     * allocating an argument array for every message. The handles are held by the mapping of the target class rather than being constants,
+     * so the JIT does not inline the target method into the dispatching code.
+     */
+    METHOD_HANDLE,
+
+    /**
+     * Invokes methods using {@link java.lang.reflect.Method#invoke(Object, Object...)}.
+     */
+    REFLECTION {
+        @Override
+        void invoke(final HandlerMethod handler, final Object target, final Object message) throws Throwable {
+            handler.invokeReflectively(target, message);
+        }
+    },
+
+    /**
+     * Dispatches messages through a chain of class identity tests that is compiled once per target class into a single method handle. There
+     * is no lookup of the message type, which makes this mode suitable for targets that handle only a handful of message types. Messages
+     * whose class is not mapped exactly are resolved as in {@link #METHOD_HANDLE}.
+     */
+    COMPILED;
+
+    /**
+     * Name of the system property used to select the default mode.
+     */
+    public static final String PROPERTY_NAME = "se.sawano.akka.japi.messagehandling.invocationMode";
+
+    private static final String DEFAULT_MODE_NAME = System.getProperty(PROPERTY_NAME, GENERATED.name());
+
+    /**
+     * @return the mode to use when none is explicitly given
+     *
+     * @throws IllegalArgumentException
+     *         if the system property {@value #PROPERTY_NAME} does not name a mode
+     */
+    public static InvocationMode defaultMode() {
+        return named(DEFAULT_MODE_NAME);
+    }
+
+    static InvocationMode named(final String name) {
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value of system property " + PROPERTY_NAME + ": " + name + ", expected one of " +
+                                               Arrays.toString(values()), e);
+        }
+    }
+
+    /**
+     * Invokes the method through its method handle. Overridden by the modes that invoke methods in other ways.
+     */
+    void invoke(final HandlerMethod handler, final Object target, final Object message) throws Throwable {
+        handler.invoke(target, message);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+/**
+ * A {@link Conflatable} message that is merged with, rather than replaced by, later messages of the same class and key. E.g. counters that
+ * can be summed up.
+ * <pre>
+ * public final class HitCount implements Mergeable&lt;HitCount&gt; {
+ *     private final String page;
+ *     private final long hits;
+ *
+ *     public Object conflationKey() {
+ *         return page;
+ *     }
+ *
+ *     public HitCount mergeWith(HitCount later) {
+ *         return new HitCount(page, hits + later.hits);
+ *     }
+ * }</pre>
+ *
+ * @param <T>
+ *         the message type
+ *
+ * @author Daniel Sawano
+ * @see ConflatingMailbox
+ */
+public interface Mergeable<T extends Mergeable<T>> extends Conflatable {
+
+    /**
+     * Merges this message with a later one. Merging is done by the thread that sends the later message, while holding the lock of the
+     * mailbox, so it should be cheap. If it fails, or returns {@code null}, the later message is queued as is.
+     *
+     * @param later
+     *         a message of the same class and with an equal key that was sent after this one
+     *
+     * @return the merged message, never {@code null}
+     */
+    T mergeWith(T later);
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.AbstractActor;
+import scala.PartialFunction;
+import scala.runtime.BoxedUnit;
+
+/**
+ * Base actor in the style of {@link AbstractActor} that delegates received messages to message handling methods explicitly defined in the
+ * current actor. It handles the same contracts as a {@link MessageDelegatingActor}, so actors of both styles can implement the same
+ * interfaces.
+ * <p>
+ * The behavior of the actor is built from its contract when the actor is created, see {@link #contractReceive()}. Request methods that do
+ * not return {@code void} reply with their return value, unless it is {@code null}. Unhandled messages are passed to {@link
+ * #unhandled(Object)}. {@link Batch}, {@link Blocking}, {@link Stateless} and asynchronous methods are not supported, an actor with such
+ * methods fails to be created.
+ * </p>
+ * <p>
+ * An actor that also handles messages outside of its contract can override {@link #receive()} and combine the behavior of its contract
+ * with its own, e.g. {@code contractReceive().orElse(ReceiveBuilder.match(...).build())}.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see MethodDelegate
+ */
+public abstract class MessageDelegatingAbstractActor extends AbstractActor {
+
+    private transient final MethodDelegate methodDelegate;
+    private transient final PartialFunction<Object, BoxedUnit> contractReceive;
+
+    /**
+     * @throws IllegalArgumentException
+     *         if unable to map the actor or if it has any batch, blocking, stateless or asynchronous methods
+     * @throws IllegalStateException
+     *         if unable to map the actor
+     */
+    public MessageDelegatingAbstractActor() {
+        methodDelegate = new MethodDelegate(this);
+        contractReceive = new ContractReceive(this, methodDelegate);
+    }
+
+    /**
+     * @param invocationMode
+     *         how messages should be delegated to the handling methods of this actor
+     * @param failureMode
+     *         how exceptions thrown by the handling methods should be reported to the supervisor of this actor
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the actor or if it has any batch, blocking, stateless or asynchronous methods
+     * @throws IllegalStateException
+     *         if unable to map the actor
+     */
+    protected MessageDelegatingAbstractActor(final InvocationMode invocationMode, final FailureMode failureMode) {
+        methodDelegate = new MethodDelegate(this, invocationMode, InvocationMetrics.defaultSampleRate(), failureMode);
+        contractReceive = new ContractReceive(this, methodDelegate);
+    }
+
+    /**
+     * @return the behavior of this actor, by default the behavior of its contract
+     */
+    @Override
+    public PartialFunction<Object, BoxedUnit> receive() {
+        return contractReceive;
+    }
+
+    /**
+     * @return a behavior that delegates the messages handled by the contract of this actor to its methods, built once when the actor was
+     * created
+     */
+    protected final PartialFunction<Object, BoxedUnit> contractReceive() {
+        return contractReceive;
+    }
+
+    /**
+     * @return the delegate used by this actor
+     */
+    protected final MethodDelegate methodDelegate() {
+        return methodDelegate;
+    }
+}
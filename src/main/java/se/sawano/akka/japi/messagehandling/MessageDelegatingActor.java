@@ -16,27 +16,276 @@
 
 package se.sawano.akka.japi.messagehandling;
 
+import akka.actor.ActorRef;
 import akka.actor.UntypedActor;
+import scala.Option;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Simple base actor that delegates received messages to message handling methods explicitly defined in the current actor.
+ * <p>
+ * Messages for {@link Batch} methods are collected rather than delivered right away. A batch is delivered when it is full, or when all
+ * messages that were in the mailbox when the batch was started have been received. The latter is detected by sending a marker message to
+ * the actor itself. Messages for other methods are delivered as they are received, so they may overtake messages that wait in a batch, and
+ * each batch method has a batch of its own. A batch is thereby always delivered while the actor receives either its last message or the
+ * marker, so a failure of a batch method is never reported as the failure of an unrelated message. A batch that is not yet delivered when
+ * the actor stops is delivered in {@link #postStop()}. When the actor restarts, the messages of such a batch are instead sent to the actor
+ * again, to be received by the new instance after the messages already in its mailbox.
+ * </p>
+ * <p>
+ * Request methods that do not return {@code void} reply with their return value, i.e. it is told to the sender of the request unless it is
+ * {@code null}. The return values of message and response methods are ignored.
+ * </p>
+ * <p>
+ * Request methods may also return a {@link java.util.concurrent.CompletionStage} instead of replying themselves. The result of the stage is then
+ * replied to the sender of the request, or a {@link akka.actor.Status.Failure} if the stage fails, while the actor goes on with other
+ * messages. See {@link #maxRequestsInFlight()} and {@link #preserveReplyOrder()}.
+ * </p>
+ * <p>
+ * {@link Blocking} and {@link Stateless} methods are offloaded, i.e. invoked on a dispatcher of their own, see {@link
+ * #offloadExecutor(String)}, while the actor goes on with other messages. Calls to stateless methods thereby run in parallel, while all
+ * other methods are still invoked one message at a time, in order.
+ * </p>
  *
  * @author Daniel Sawano
  * @see MethodDelegate
  */
 public abstract class MessageDelegatingActor extends UntypedActor {
 
+    /**
+     * Not a {@link ControlMessage}, since it must be received after the messages that were queued before it, see {@link
+     * ContractPriorityMailbox}.
+     */
+    static final Object END_OF_BATCH = new Object() {
+        @Override
+        public String toString() {
+            return "EndOfBatch";
+        }
+    };
+
     private transient final MethodDelegate methodDelegate;
+    /**
+     * Batch, replying and offloaded methods need the receiving method of a message to be looked up before it is delivered.
+     */
+    private transient final boolean lookingUpMethods;
+    private transient final AsyncRequests asyncRequests;
+    private transient final Map<HandlerMethod, List<Object>> batches = new LinkedHashMap<>();
+    private transient boolean endOfBatchPending;
 
     public MessageDelegatingActor() {
         methodDelegate = new MethodDelegate(this);
+        asyncRequests = methodDelegate.hasReplyingHandlers() || methodDelegate.hasOffloadedHandlers() ? new AsyncRequests(this) : null;
+        lookingUpMethods = methodDelegate.hasBatchHandlers() || asyncRequests != null;
+    }
+
+    /**
+     * @param invocationMode
+     *         how messages should be delegated to the handling methods of this actor
+     */
+    protected MessageDelegatingActor(final InvocationMode invocationMode) {
+        methodDelegate = new MethodDelegate(this, invocationMode);
+        asyncRequests = methodDelegate.hasReplyingHandlers() || methodDelegate.hasOffloadedHandlers() ? new AsyncRequests(this) : null;
+        lookingUpMethods = methodDelegate.hasBatchHandlers() || asyncRequests != null;
+    }
+
+    /**
+     * @param invocationMode
+     *         how messages should be delegated to the handling methods of this actor
+     * @param failureMode
+     *         how exceptions thrown by the handling methods should be reported to the supervisor of this actor, e.g. {@link
+     *         FailureMode#RETHROW} to let the supervisor decide on the original exception
+     */
+    protected MessageDelegatingActor(final InvocationMode invocationMode, final FailureMode failureMode) {
+        methodDelegate = new MethodDelegate(this, invocationMode, InvocationMetrics.defaultSampleRate(), failureMode);
+        asyncRequests = methodDelegate.hasReplyingHandlers() || methodDelegate.hasOffloadedHandlers() ? new AsyncRequests(this) : null;
+        lookingUpMethods = methodDelegate.hasBatchHandlers() || asyncRequests != null;
     }
 
     @Override
     public void onReceive(final Object message) throws Exception {
+        if (lookingUpMethods) {
+            onReceiveLookingUpMethod(message);
+            return;
+        }
         if (methodDelegate.onReceive(message)) {
             return;
         }
+        onUnhandled(message);
+    }
+
+    private void onReceiveLookingUpMethod(final Object message) {
+        if (asyncRequests != null && asyncRequests.onCompleted(message)) {
+            return;
+        }
+        if (message == END_OF_BATCH) {
+            endOfBatchPending = false;
+            deliverBatches();
+            return;
+        }
+        final HandlerMethod method = methodDelegate.methodFor(message);
+        if (method == null) {
+            onUnhandled(message);
+        }
+        else if (method.isBatch()) {
+            addToBatch(method, message);
+        }
+        else if (method.isAsync() || method.isOffloaded()) {
+            asyncRequests.receive(method, message, getSender());
+        }
+        else if (method.isReplying()) {
+            reply(methodDelegate.deliver(method, message, false));
+        }
+        else {
+            methodDelegate.deliver(method, message, false);
+        }
+    }
+
+    private void reply(final Object reply) {
+        if (reply != null) {
+            getSender().tell(reply, getSelf());
+        }
+    }
+
+    private void addToBatch(final HandlerMethod method, final Object message) {
+        List<Object> batch = batches.get(method);
+        if (batch == null) {
+            batch = new ArrayList<>();
+            batches.put(method, batch);
+        }
+        batch.add(message);
+        if (batch.size() >= method.maxBatchSize()) {
+            batches.remove(method);
+            methodDelegate.deliver(method, batch, true);
+        }
+        else {
+            markEndOfBatch();
+        }
+    }
+
+    private void markEndOfBatch() {
+        if (!endOfBatchPending) {
+            endOfBatchPending = true;
+            getSelf().tell(END_OF_BATCH, getSelf());
+        }
+    }
+
+    /**
+     * Each batch is removed before it is delivered, so a batch that fails is not delivered again. Batches left when one fails are delivered
+     * on another marker.
+     */
+    private void deliverBatches() {
+        while (!batches.isEmpty()) {
+            final Iterator<Map.Entry<HandlerMethod, List<Object>>> entries = batches.entrySet().iterator();
+            final Map.Entry<HandlerMethod, List<Object>> entry = entries.next();
+            entries.remove();
+            try {
+                methodDelegate.deliver(entry.getKey(), entry.getValue(), true);
+            } catch (RuntimeException e) {
+                if (!batches.isEmpty()) {
+                    markEndOfBatch();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sends the messages of batches that are not yet delivered to the actor again, rather than delivering them to the instance that failed.
+     * Subclasses that override this method should call it.
+     */
+    @Override
+    public void preRestart(final Throwable reason, final Option<Object> message) throws Exception {
+        if (lookingUpMethods) {
+            for (final List<Object> batch : batches.values()) {
+                for (final Object batchedMessage : batch) {
+                    getSelf().tell(batchedMessage, ActorRef.noSender());
+                }
+            }
+            batches.clear();
+        }
+        super.preRestart(reason, message);
+    }
+
+    /**
+     * Delivers any batches that are not yet delivered and abandons messages for asynchronous and offloaded methods that wait to be started,
+     * see {@link #maxRequestsInFlight()}. Subclasses that override this method should call it.
+     */
+    @Override
+    public void postStop() throws Exception {
+        if (lookingUpMethods) {
+            deliverBatches();
+        }
+        if (asyncRequests != null) {
+            asyncRequests.abandonWaitingRequests();
+        }
+    }
+
+    private void onUnhandled(final Object message) {
+        if (dropRepeatedUnhandledMessages() && !methodDelegate.isFirstUnhandled(message.getClass())) {
+            return;
+        }
         unhandled(message);
     }
+
+    /**
+     * Unhandled messages are by default passed to {@link #unhandled(Object)}, which publishes them on the event stream. An actor that
+     * receives a lot of messages it does not handle can override this method to return {@code true}. Then only the first unhandled message
+     * of each type is passed on, subsequent messages of the same type are dropped silently. The first message is per actor class, not per
+     * actor, and for as long as the actor class is loaded, so a restarted actor, or another actor of the same class, does not pass on a
+     * message type that has already been passed on. Dropped messages are still counted, see {@link MethodDelegate#unhandledCounts()}.
+     *
+     * @return {@code true} if repeated unhandled messages of the same type should be dropped, {@code false} otherwise
+     */
+    protected boolean dropRepeatedUnhandledMessages() {
+        return false;
+    }
+
+    /**
+     * The maximum number of requests to asynchronous methods and invocations of {@link Blocking} and {@link Stateless} methods that may be in
+     * flight at the same time. Further messages for such methods wait, in the order they were received, until an earlier one completes.
+     * Waiting messages are not kept when the actor stops or restarts. Requests among them are replied to with a {@link
+     * akka.actor.Status.Failure}, other messages are published as dead letters.
+     *
+     * @return the maximum number of asynchronous requests and offloaded invocations in flight, 100 by default
+     */
+    protected int maxRequestsInFlight() {
+        return 100;
+    }
+
+    /**
+     * Replies to asynchronous requests are by default sent as soon as their stage completes. An actor can override this method to return
+     * {@code true} to have the replies sent in the order the requests were received instead, at the cost of holding back replies to later
+     * requests until earlier ones complete.
+     *
+     * @return {@code true} if replies to asynchronous requests should be sent in the order the requests were received
+     */
+    protected boolean preserveReplyOrder() {
+        return false;
+    }
+
+    /**
+     * Returns the executor to invoke {@link Blocking} and {@link Stateless} methods on. By default this is the dispatcher with the given id in the actor system of
+     * this actor.
+     *
+     * @param dispatcher
+     *         the id of the dispatcher of an offloaded method, see {@link Blocking#dispatcher()} and {@link Stateless#dispatcher()}
+     *
+     * @return the executor to invoke the offloaded method on
+     */
+    protected Executor offloadExecutor(final String dispatcher) {
+        return getContext().system().dispatchers().lookup(dispatcher);
+    }
+
+    /**
+     * @return the delegate used by this actor
+     */
+    protected final MethodDelegate methodDelegate() {
+        return methodDelegate;
+    }
 }
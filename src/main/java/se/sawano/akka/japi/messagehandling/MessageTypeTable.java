@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.Map;
+
+/**
+ * Immutable table from message types to their methods. Keys are compared by identity and stored in a single open addressing array, with
+ * each method right next to its key. A lookup is one identity hash and, since the table is kept at most half full, usually a single probe.
+ *
+ * @author Daniel Sawano
+ */
+@Immutable
+final class MessageTypeTable {
+
+    private final Object[] entries;
+    private final int mask;
+
+    MessageTypeTable(final Map<Class<?>, HandlerMethod> methods) {
+        final int capacity = Integer.highestOneBit(Math.max(1, methods.size()) * 4 - 1);
+        this.entries = new Object[capacity * 2];
+        this.mask = capacity - 1;
+        for (final Map.Entry<Class<?>, HandlerMethod> entry : methods.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void put(final Class<?> type, final HandlerMethod method) {
+        int index = indexFor(type);
+        while (entries[index * 2] != null) {
+            index = (index + 1) & mask;
+        }
+        entries[index * 2] = type;
+        entries[index * 2 + 1] = method;
+    }
+
+    /**
+     * @return the method mapped to exactly the given type, or {@code null} if there is none
+     */
+    HandlerMethod get(final Class<?> type) {
+        int index = indexFor(type);
+        Object key;
+        while ((key = entries[index * 2]) != null) {
+            if (key == type) {
+                return (HandlerMethod) entries[index * 2 + 1];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private int indexFor(final Class<?> type) {
+        final int hash = System.identityHashCode(type);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -16,18 +16,21 @@
 
 package se.sawano.akka.japi.messagehandling;
 
-import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
 
-import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
+import static se.sawano.akka.japi.messagehandling.GeneratedDispatchers.dispatcherFor;
 import static se.sawano.akka.japi.messagehandling.MethodRepository.repositoryFor;
 
 /**
  * Delegates received messages to the appropriate method as declared by the target's implemented interfaces. I.e. {@link Messages},{@link
  * Requests} and {@link Responses}, or any of their ancestors. Messages are mapped by type so it is not possible to have more than one
  * message receiving method for any given message type. E.g. one cannot map a class implementing the interface {@code Messages2&lt;Double,
- * Double&gt;}. But {@code Messages2&lt;Double, Integer&gt;} would be fine.
+ * Double&gt;}. But {@code Messages2&lt;Double, Integer&gt;} would be fine. A message whose own class is not mapped is delegated to the method
+ * mapped to its most specific superclass or interface, if any.
  * <p>
  * A typical use case would be to create a base actor that takes care of the message delegation and then have other actors extend that base
  * class. For example an implementation of a base actor could look like this:
@@ -43,6 +46,17 @@ import static se.sawano.akka.japi.messagehandling.MethodRepository.repositoryFor
  *     }
  *     unhandled(message);
  * } </pre>
+ * <p>
+ * Each delegate remembers the methods of the last two message classes it received, which makes runs of messages of the same types cheap
+ * to dispatch. See {@link #inlineCacheHits()} and {@link #inlineCacheMisses()}. A delegate is meant to be used by one thread at a time, as
+ * by the actor that owns it. The mapping of the target class is shared by all delegates and safe to use from any thread.
+ * </p>
+ * <p>
+ * Delegates can record the number of invocations, failures and latencies of each method of the target, see {@link InvocationMetrics}.
+ * </p>
+ * <p>
+ * Exceptions thrown by the target's methods are wrapped in a {@link DelegateException} or rethrown as they are, see {@link FailureMode}.
+ * </p>
  *
  * @author Daniel Sawano
  * @see Messages
@@ -50,11 +64,22 @@ import static se.sawano.akka.japi.messagehandling.MethodRepository.repositoryFor
  * @see Responses
  * @see MessageDelegatingActor
  */
-@Immutable
+@NotThreadSafe
 public class MethodDelegate {
 
     private final Object target;
     private final MethodRepository methodRepository;
+    private final GeneratedDispatcher generatedDispatcher;
+    private final CompiledDispatcher compiledDispatcher;
+    private final InvocationMode invocationMode;
+    private final FailureMode failureMode;
+    private final InlineCache inlineCache = new InlineCache();
+    private final int metricsSampleRate;
+    /**
+     * Like the counters of the inline cache this is only exact when the delegate is used by one thread at a time. Races merely shift which
+     * invocations are sampled.
+     */
+    private int invocationsUntilSample;
 
     /**
      * Creates a new delegate for the given target. All methods that are defined in the interfaces {@link Messages},{@link Requests} and
@@ -67,12 +92,87 @@ public class MethodDelegate {
      *         if unable to map the target
      * @throws IllegalStateException
      *         if unable to map the target
+     * @see InvocationMode#defaultMode()
      */
     public MethodDelegate(final Object target) {
+        this(target, InvocationMode.defaultMode());
+    }
+
+    /**
+     * Creates a new delegate for the given target that invokes the target's methods using the given mode.
+     *
+     * @param target
+     *         the target to delegate to
+     * @param invocationMode
+     *         how to invoke the methods of the target
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the target
+     * @throws IllegalStateException
+     *         if unable to map the target
+     * @see InvocationMetrics#defaultSampleRate()
+     */
+    public MethodDelegate(final Object target, final InvocationMode invocationMode) {
+        this(target, invocationMode, InvocationMetrics.defaultSampleRate());
+    }
+
+    /**
+     * Creates a new delegate for the given target that invokes the target's methods using the given mode and records invocation metrics
+     * with the given sample rate.
+     *
+     * @param target
+     *         the target to delegate to
+     * @param invocationMode
+     *         how to invoke the methods of the target
+     * @param metricsSampleRate
+     *         the number of invocations per measured latency, or {@code 0} to not record any metrics
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the target or if the sample rate is negative
+     * @throws IllegalStateException
+     *         if unable to map the target or to register its metrics
+     * @see InvocationMetrics
+     * @see FailureMode#defaultMode()
+     */
+    public MethodDelegate(final Object target, final InvocationMode invocationMode, final int metricsSampleRate) {
+        this(target, invocationMode, metricsSampleRate, FailureMode.defaultMode());
+    }
+
+    /**
+     * Creates a new delegate for the given target that invokes the target's methods using the given mode, records invocation metrics with
+     * the given sample rate and reports exceptions thrown by the target's methods according to the given failure mode.
+     *
+     * @param target
+     *         the target to delegate to
+     * @param invocationMode
+     *         how to invoke the methods of the target
+     * @param metricsSampleRate
+     *         the number of invocations per measured latency, or {@code 0} to not record any metrics
+     * @param failureMode
+     *         how to report exceptions thrown by the methods of the target
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the target or if the sample rate is negative
+     * @throws IllegalStateException
+     *         if unable to map the target or to register its metrics
+     */
+    public MethodDelegate(final Object target, final InvocationMode invocationMode, final int metricsSampleRate,
+                          final FailureMode failureMode) {
         requireNonNull(target);
+        requireNonNull(invocationMode);
+        requireNonNull(failureMode);
 
         this.target = target;
-        this.methodRepository = repositoryFor(target.getClass());
+        this.invocationMode = invocationMode;
+        this.failureMode = failureMode;
+        this.metricsSampleRate = InvocationMetrics.requireValidSampleRate(metricsSampleRate);
+        final boolean directDispatch = metricsSampleRate == 0;
+        this.generatedDispatcher = directDispatch && invocationMode == InvocationMode.GENERATED ? dispatcherFor(target.getClass()) : null;
+        this.methodRepository = generatedDispatcher == null ? repositoryFor(target.getClass()) : null;
+        this.compiledDispatcher = directDispatch && invocationMode == InvocationMode.COMPILED ? methodRepository.compiledDispatcher() : null;
+        if (!directDispatch) {
+            methodRepository.enableMetrics();
+        }
     }
 
     /**
@@ -84,22 +184,245 @@ public class MethodDelegate {
      * @return {@code true} if a matching method was found and the message was delegated to the target, {@code false} otherwise
      *
      * @throws DelegateException
-     *         if an exception occurred while invoking the target method
+     *         if an exception occurred while invoking the target method, unless rethrown as is by {@link FailureMode#RETHROW}
      */
     public boolean onReceive(final Object message) throws DelegateException {
         notNull(message);
 
-        final Method method = methodRepository.methodFor(message);
-        if (method == null) {
-            return false;
+        HandlerMethod method = null;
+        try {
+            if (generatedDispatcher != null && generatedDispatcher.dispatch(target, message)) {
+                return true;
+            }
+            if (compiledDispatcher != null && compiledDispatcher.dispatch(target, message)) {
+                return true;
+            }
+            method = inlineCache.methodFor(methodRepository(), message.getClass());
+            if (method == null) {
+                return false;
+            }
+            invoke(method, message, false);
+            return true;
+        } catch (Throwable e) {
+            throw failureMode.failureOf(e, method == null ? null : method.method(), message.getClass());
+        }
+    }
+
+    /**
+     * Looks up the method that should receive a message, without invoking it. Used by actors that deliver messages to {@link Batch} methods
+     * in batches. Generated and compiled dispatchers are bypassed.
+     *
+     * @return the receiving method, or {@code null} if the message is not handled, in which case it is counted as unhandled
+     *
+     * @throws DelegateException
+     *         if the method could not be looked up, e.g. if the message type is ambiguous, unless rethrown as is by {@link
+     *         FailureMode#RETHROW}
+     */
+    HandlerMethod methodFor(final Object message) throws DelegateException {
+        notNull(message);
+
+        try {
+            return inlineCache.methodFor(methodRepository(), message.getClass());
+        } catch (RuntimeException e) {
+            throw failureMode.lookupFailureOf(e, message.getClass());
+        }
+    }
+
+    /**
+     * @param method
+     *         a method of the target as returned by {@link #methodFor(Object)}
+     * @param message
+     *         the message to deliver, or a list of messages if {@code batch} is {@code true}
+     * @param batch
+     *         if the method is a {@link Batch} method that should receive a whole batch
+     *
+     * @return the value returned by the method if it is a replying method, {@code null} otherwise
+     *
+     * @see HandlerMethod#isReplying()
+     */
+    Object deliver(final HandlerMethod method, final Object message, final boolean batch) throws DelegateException {
+        try {
+            return invoke(method, message, batch);
+        } catch (Throwable e) {
+            throw failureMode.failureOf(e, method.method(), method.messageType());
         }
+    }
 
+    /**
+     * Delivers a message to a {@link Blocking} or {@link Stateless} method on a thread other than the one that uses this delegate. Whether
+     * the invocation is sampled is decided by the caller, see {@link #sampleOffloaded()}, since the sampling state of the delegate is only
+     * touched by the thread that uses it.
+     *
+     * @return the value returned by the method if it is a replying method, {@code null} otherwise
+     */
+    Object deliverOffloaded(final HandlerMethod method, final Object message, final boolean sampled) throws DelegateException {
         try {
-            method.invoke(target, message);
-        } catch (Exception e) {
-            throw new DelegateException("Exception while invoking target method", e);
+            return metricsSampleRate == 0 ? invokeDirectly(method, message, false) : invokeAndRecord(method, message, false, sampled);
+        } catch (Throwable e) {
+            throw failureMode.failureOf(e, method.method(), method.messageType());
+        }
+    }
+
+    /**
+     * Called by the thread that uses this delegate before it hands an invocation to another thread.
+     *
+     * @return {@code true} if the latency of the next offloaded invocation should be measured
+     */
+    boolean sampleOffloaded() {
+        return metricsSampleRate != 0 && nextInvocationSampled();
+    }
+
+    /**
+     * Reports an exception thrown by a method of the target outside of {@link #deliver(HandlerMethod, Object, boolean)}, e.g. by the stage
+     * of an asynchronous method, according to the failure mode of this delegate.
+     *
+     * @return the exception to throw
+     */
+    RuntimeException failureOf(final Throwable failure, final HandlerMethod method) {
+        return failureMode.failureOf(failure, method.method(), method.messageType());
+    }
+
+    /**
+     * @return {@code true} if the target has any {@link Batch} methods
+     */
+    boolean hasBatchHandlers() {
+        return generatedDispatcher != null ? generatedDispatcher.hasBatchHandlers() : methodRepository.hasBatchHandlers();
+    }
+
+    /**
+     * @return {@code true} if the target has any request methods that reply with their return value
+     */
+    boolean hasReplyingHandlers() {
+        return generatedDispatcher != null ? generatedDispatcher.hasReplyingHandlers() : methodRepository.hasReplyingHandlers();
+    }
+
+    /**
+     * @return {@code true} if the target has any {@link Blocking} or {@link Stateless} methods
+     */
+    boolean hasOffloadedHandlers() {
+        return generatedDispatcher != null ? generatedDispatcher.hasOffloadedHandlers() : methodRepository.hasOffloadedHandlers();
+    }
+
+    /**
+     * Only replying methods can be asynchronous, so targets with a generated dispatcher and no such methods do not need their repository.
+     *
+     * @return {@code true} if the target has any request methods that return a {@link java.util.concurrent.CompletionStage}
+     */
+    boolean hasAsyncHandlers() {
+        return hasReplyingHandlers() && methodRepository().hasAsyncHandlers();
+    }
+
+    /**
+     * Unlike {@link #methodFor(Object)} this does not count messages that are not handled.
+     *
+     * @return {@code true} if messages of the given class are handled by the target
+     *
+     * @throws IllegalStateException
+     *         if the class has no exactly mapped type and more than one of its supertypes are equally specific
+     */
+    boolean handles(final Class<?> messageClass) {
+        return methodRepository().handlerOf(messageClass) != null;
+    }
+
+    /**
+     * Returns the number of messages of the given class that were not handled. Messages are counted per target class, i.e. for all delegates
+     * with a target of the same class as this delegate's target.
+     *
+     * @param messageClass
+     *         the message class to get the count for
+     *
+     * @return the number of unhandled messages of the given class
+     */
+    public long unhandledCount(final Class<?> messageClass) {
+        requireNonNull(messageClass);
+
+        return methodRepository().unhandledCount(messageClass);
+    }
+
+    /**
+     * Tells if an unhandled message is the first of its class. Like the counts, this is per target class and for as long as the target
+     * class is loaded, i.e. only one delegate of all delegates with a target of the same class sees the first message of each class.
+     *
+     * @return {@code true} exactly once per unhandled message class, {@code false} otherwise
+     */
+    boolean isFirstUnhandled(final Class<?> messageClass) {
+        return methodRepository().isFirstUnhandled(messageClass);
+    }
+
+    /**
+     * Returns a snapshot of the number of messages that were not handled, by message class. Messages are counted per target class, i.e. for
+     * all delegates with a target of the same class as this delegate's target.
+     *
+     * @return the number of unhandled messages by message class
+     */
+    public Map<Class<?>, Long> unhandledCounts() {
+        return methodRepository().unhandledCounts();
+    }
+
+    /**
+     * Returns the number of messages whose method was found among the last two message classes received by this delegate. Messages that
+     * are dispatched by a compiled or generated dispatcher do not use the cache and are not counted. The count is exact as long as the
+     * delegate is only used by one thread at a time, as within an actor.
+     *
+     * @return the number of inline cache hits
+     */
+    public long inlineCacheHits() {
+        return inlineCache.hits();
+    }
+
+    /**
+     * @return the number of messages whose method had to be looked up, including unhandled messages
+     *
+     * @see #inlineCacheHits()
+     */
+    public long inlineCacheMisses() {
+        return inlineCache.misses();
+    }
+
+    private Object invoke(final HandlerMethod method, final Object message, final boolean batch) throws Throwable {
+        return metricsSampleRate == 0 ? invokeDirectly(method, message, batch) : invokeAndRecord(method, message, batch);
+    }
+
+    /**
+     * Replying methods are always invoked through their method handle, since their return value is needed.
+     */
+    private Object invokeDirectly(final HandlerMethod method, final Object message, final boolean batch) throws Throwable {
+        if (batch) {
+            method.invokeBatch(target, (List<?>) message);
+        }
+        else if (method.isReplying()) {
+            final Object reply = method.invokeForReply(target, message);
+            return method.isAsync() ? requireNonNull(reply, "Asynchronous method returned null: " + method) : reply;
+        }
+        else {
+            invocationMode.invoke(method, target, message);
+        }
+        return null;
+    }
+
+    private Object invokeAndRecord(final HandlerMethod method, final Object message, final boolean batch) throws Throwable {
+        return invokeAndRecord(method, message, batch, nextInvocationSampled());
+    }
+
+    private boolean nextInvocationSampled() {
+        final boolean sampled = --invocationsUntilSample <= 0;
+        if (sampled) {
+            invocationsUntilSample = metricsSampleRate;
+        }
+        return sampled;
+    }
+
+    private Object invokeAndRecord(final HandlerMethod method, final Object message, final boolean batch, final boolean sampled)
+            throws Throwable {
+        final long start = sampled ? System.nanoTime() : 0;
+        boolean failed = true;
+        try {
+            final Object reply = invokeDirectly(method, message, batch);
+            failed = false;
+            return reply;
+        } finally {
+            method.metrics().record(failed, sampled ? System.nanoTime() - start : -1);
         }
-        return true;
     }
 
     private void notNull(final Object message) {
@@ -108,8 +431,20 @@ public class MethodDelegate {
         }
     }
 
+    /**
+     * Targets with a generated dispatcher only need their repository for messages whose class is not mapped exactly, so it is not created
+     * until then.
+     */
+    private MethodRepository methodRepository() {
+        return methodRepository != null ? methodRepository : repositoryFor(target.getClass());
+    }
+
     int numberOfMappedMethods() {
-        return methodRepository.numberOfMappedMethods();
+        return methodRepository().numberOfMappedMethods();
+    }
+
+    boolean usesGeneratedDispatcher() {
+        return generatedDispatcher != null;
     }
 
 }
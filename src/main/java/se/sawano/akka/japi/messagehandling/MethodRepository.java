@@ -16,94 +16,398 @@
 
 package se.sawano.akka.japi.messagehandling;
 
-import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
 
 import javax.annotation.PostConstruct;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.Objects.requireNonNull;
 
-@Immutable
+/**
+ * Mapping from message types to the methods of a target class that should receive them. Repositories are expensive to create, so they are
+ * created once per target class and shared by all instances of it, see {@link #repositoryFor(Class)}. A target class listed in a {@link
+ * HandlerManifest} is mapped from its entry rather than by scanning its methods.
+ * <p>
+ * The mapping itself is fixed once the repository is created. The resolutions of mapped types are created with it. The resolutions of other
+ * message classes, the unhandled counts, the compiled dispatcher and the metrics are added as they are needed, safely for concurrent use.
+ * </p>
+ * <p>
+ * A message is received by the method mapped to its class or, if there is none, by the method mapped to its most specific superclass or
+ * interface. Which method, if any, that receives a given message class is resolved once and then remembered. Messages that no method
+ * receives are counted per message class.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@ThreadSafe
 final class MethodRepository {
 
-    public static MethodRepository repositoryFor(final Class targetClass) {
+    /**
+     * Repositories are cached on the target class itself. A {@link ClassValue} does not keep the class, or its class loader, reachable, so
+     * redeployed classes can still be unloaded.
+     */
+    private static final ClassValue<MethodRepository> REPOSITORIES = new ClassValue<MethodRepository>() {
+        @Override
+        protected MethodRepository computeValue(final Class<?> type) {
+            final List<HandlerMethod> listedHandlers = HandlerManifest.handlersOf(type);
+            return listedHandlers != null ? listed(type, listedHandlers) : scanned(type);
+        }
+    };
+
+    /**
+     * Returns the repository for the given target class. The methods of a class are only registered the first time this is called for it,
+     * subsequent calls return the same instance. Methods are taken from the entry of the class in a {@link HandlerManifest} if there is a
+     * usable one.
+     *
+     * @param targetClass
+     *         the class to get the repository for
+     *
+     * @return the repository for the target class
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the target class
+     * @throws IllegalStateException
+     *         if unable to map the target class
+     */
+    public static MethodRepository repositoryFor(final Class<?> targetClass) {
+        requireNonNull(targetClass);
+
+        return REPOSITORIES.get(targetClass);
+    }
+
+    /**
+     * Maps the target class by scanning its methods, without looking in the cache or in a {@link HandlerManifest}.
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the target class
+     * @throws IllegalStateException
+     *         if unable to map the target class
+     */
+    static MethodRepository scanned(final Class<?> targetClass) {
         final MethodRepository repository = new MethodRepository(targetClass);
         repository.registerMethods();
         return repository;
     }
 
-    private final Class targetClass;
-    private final HashMap<Type, Method> responseMethods = new HashMap<>();
-    private final HashMap<Type, Method> requestMethods = new HashMap<>();
-    private final HashMap<Type, Method> messageMethods = new HashMap<>();
+    private static MethodRepository listed(final Class<?> targetClass, final List<HandlerMethod> listedHandlers) {
+        final MethodRepository repository = new MethodRepository(targetClass);
+        for (final HandlerMethod handler : listedHandlers) {
+            repository.add(handler);
+        }
+        repository.messageTypes = new MessageTypeTable(repository.handlers);
+        return repository;
+    }
+
+    private final Class<?> targetClass;
+    private final LinkedHashMap<Class<?>, HandlerMethod> handlers = new LinkedHashMap<>();
+    /**
+     * Compiled from {@link #handlers} once all methods are registered. Safely published together with the repository by {@link
+     * #REPOSITORIES}.
+     */
+    private MessageTypeTable messageTypes;
+    private final ConcurrentHashMap<Class<?>, Resolution> resolutions = new ConcurrentHashMap<>();
+    private volatile CompiledDispatcher compiledDispatcher;
+    private boolean metricsEnabled;
+    private boolean hasBatchHandlers;
+    private boolean hasReplyingHandlers;
+    private boolean hasOffloadedHandlers;
+    private boolean hasAsyncHandlers;
 
-    private MethodRepository(final Class targetClass) {
+    private MethodRepository(final Class<?> targetClass) {
         requireNonNull(targetClass);
 
         this.targetClass = targetClass;
     }
 
-    public Method methodFor(final Object message) {
+    /**
+     * @param message
+     *         the message to find the receiving method for
+     *
+     * @return the method that should receive the message, or {@code null} if the message is not handled by the target class. In the latter
+     * case the message is counted as unhandled.
+     *
+     * @throws IllegalStateException
+     *         if the message has no exactly mapped type and more than one of its supertypes are equally specific
+     */
+    public HandlerMethod methodFor(final Object message) {
         requireNonNull(message);
 
         final Class<?> messageClass = message.getClass();
-        final Method messageMethod = messageMethods.get(messageClass);
-        if (messageMethod != null) {
-            return messageMethod;
+        final HandlerMethod exactMethod = messageTypes.get(messageClass);
+        if (exactMethod != null) {
+            return exactMethod;
+        }
+        final Resolution resolution = resolutionOf(messageClass);
+        if (resolution.method == null) {
+            resolution.unhandled.increment();
         }
-        final Method responseMethod = responseMethods.get(messageClass);
-        if (responseMethod != null) {
-            return responseMethod;
+        return resolution.method;
+    }
+
+    /**
+     * Like {@link #methodFor(Object)}, but returns the resolution of a message class. There is one resolution per message class, so an
+     * {@link InlineCache} can keep it without allocating an entry of its own.
+     *
+     * @return the resolution of the message class, whose method is {@code null} if its messages are not handled, in which case a message is
+     * counted as unhandled
+     *
+     * @throws IllegalStateException
+     *         if the class has no exactly mapped type and more than one of its supertypes are equally specific
+     */
+    Resolution resolutionFor(final Class<?> messageClass) {
+        final Resolution resolution = resolutionOf(messageClass);
+        if (resolution.method == null) {
+            resolution.unhandled.increment();
         }
-        return requestMethods.get(messageClass);
+        return resolution;
+    }
+
+    /**
+     * Like {@link #methodFor(Object)}, but without counting unhandled messages.
+     *
+     * @return the method that should receive messages of the given class, or {@code null} if they are not handled
+     *
+     * @throws IllegalStateException
+     *         if the class has no exactly mapped type and more than one of its supertypes are equally specific
+     */
+    HandlerMethod handlerOf(final Class<?> messageClass) {
+        final HandlerMethod method = messageTypes.get(messageClass);
+        return method != null ? method : resolutionOf(messageClass).method;
+    }
+
+    /**
+     * @return the category of the method that should receive messages of the given class, or {@code null} if they are not handled
+     *
+     * @throws IllegalStateException
+     *         if the class has no exactly mapped type and more than one of its supertypes are equally specific
+     */
+    HandlerCategory categoryOf(final Class<?> messageClass) {
+        final HandlerMethod method = handlerOf(messageClass);
+        return method == null ? null : method.category();
+    }
+
+    private Resolution resolutionOf(final Class<?> messageClass) {
+        final Resolution resolution = resolutions.get(messageClass);
+        return resolution != null ? resolution : addResolution(messageClass);
+    }
+
+    private Resolution addResolution(final Class<?> messageClass) {
+        final Resolution resolution = new Resolution(messageClass, resolve(messageClass));
+        final Resolution previous = resolutions.putIfAbsent(messageClass, resolution);
+        return previous != null ? previous : resolution;
+    }
+
+    /**
+     * @return the number of messages of the given class that were not handled by the target class
+     */
+    long unhandledCount(final Class<?> messageClass) {
+        final Resolution resolution = resolutions.get(messageClass);
+        return resolution == null || resolution.method != null ? 0 : resolution.unhandled.sum();
+    }
+
+    /**
+     * The first call for a message class is found atomically, so exactly one call returns {@code true} even if several delegates of the
+     * target class receive messages of the class at the same time.
+     *
+     * @return {@code true} the first time this is called for a message class that is not handled by the target class, {@code false} on
+     * every later call and for message classes that are handled or have not been received
+     */
+    boolean isFirstUnhandled(final Class<?> messageClass) {
+        final Resolution resolution = resolutions.get(messageClass);
+        return resolution != null && resolution.method == null && resolution.reported.compareAndSet(false, true);
+    }
+
+    /**
+     * @return the number of messages that were not handled by the target class, by message class
+     */
+    Map<Class<?>, Long> unhandledCounts() {
+        final HashMap<Class<?>, Long> counts = new HashMap<>();
+        for (final Map.Entry<Class<?>, Resolution> entry : resolutions.entrySet()) {
+            if (entry.getValue().method == null) {
+                counts.put(entry.getKey(), entry.getValue().unhandled.sum());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Only called for message classes that are not mapped exactly.
+     */
+    private HandlerMethod resolve(final Class<?> messageClass) {
+        final List<Class<?>> candidates = new ArrayList<>();
+        for (final Class<?> messageType : handlers.keySet()) {
+            if (messageType.isAssignableFrom(messageClass)) {
+                candidates.add(messageType);
+            }
+        }
+        final List<Class<?>> mostSpecific = new ArrayList<>();
+        for (final Class<?> candidate : candidates) {
+            if (!hasMoreSpecific(candidate, candidates)) {
+                mostSpecific.add(candidate);
+            }
+        }
+        if (mostSpecific.isEmpty()) {
+            return null;
+        }
+        if (mostSpecific.size() > 1) {
+            throw new IllegalStateException(
+                    "Message type: " + messageClass + " is ambiguous in target class: " + targetClass + ". Matches: " + mostSpecific);
+        }
+        return handlers.get(mostSpecific.get(0));
+    }
+
+    private static boolean hasMoreSpecific(final Class<?> candidate, final List<Class<?>> candidates) {
+        for (final Class<?> other : candidates) {
+            if (other != candidate && candidate.isAssignableFrom(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return all mapped methods by the message type they receive
+     */
+    Map<Class<?>, HandlerMethod> handlers() {
+        return Collections.unmodifiableMap(handlers);
+    }
+
+    /**
+     * The compiled dispatcher is created lazily since it is only used in {@link InvocationMode#COMPILED}. Creating it more than once in a
+     * race is harmless since all instances are equivalent.
+     *
+     * @return the compiled dispatcher for the target class
+     */
+    CompiledDispatcher compiledDispatcher() {
+        CompiledDispatcher dispatcher = compiledDispatcher;
+        if (dispatcher == null) {
+            dispatcher = new CompiledDispatcher(handlers());
+            compiledDispatcher = dispatcher;
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Creates and registers the metrics of all methods, unless they already are. Metrics are only created for target classes that have a
+     * delegate recording them.
+     *
+     * @throws IllegalStateException
+     *         if unable to register the metrics
+     */
+    synchronized void enableMetrics() {
+        if (metricsEnabled) {
+            return;
+        }
+        final List<HandlerMetrics> metrics = new ArrayList<>(handlers.size());
+        for (final HandlerMethod handler : handlers.values()) {
+            metrics.add(new HandlerMetrics(targetClass, handler));
+        }
+        InvocationMetrics.register(targetClass, metrics);
+        int i = 0;
+        for (final HandlerMethod handler : handlers.values()) {
+            handler.setMetrics(metrics.get(i++));
+        }
+        metricsEnabled = true;
     }
 
     @PostConstruct
     private void registerMethods() {
+        final TargetMethod[] targetMethods = TargetMethod.declaredBy(targetClass);
         for (final Class<?> interfaceClass : targetClass.getInterfaces()) {
             if (Requests.class.isAssignableFrom(interfaceClass)) {
-                addRequestMethods(interfaceClass.getMethods());
+                addMethods(interfaceClass.getMethods(), HandlerCategory.REQUEST, targetMethods);
             }
             else if (Responses.class.isAssignableFrom(interfaceClass)) {
-                addResponseMethods(interfaceClass.getMethods());
+                addMethods(interfaceClass.getMethods(), HandlerCategory.RESPONSE, targetMethods);
             }
             else if (Messages.class.isAssignableFrom(interfaceClass)) {
-                addMessageMethods(interfaceClass.getMethods());
+                addMethods(interfaceClass.getMethods(), HandlerCategory.MESSAGE, targetMethods);
             }
         }
+        messageTypes = new MessageTypeTable(handlers);
     }
 
-    private void addRequestMethods(final Method[] interfaceMethods) {
-        addMethodsToMap(interfaceMethods, requestMethods);
+    private void addMethods(final Method[] interfaceMethods, final HandlerCategory category, final TargetMethod[] targetMethods) {
+        for (final Method method : interfaceMethods) {
+            final Batch batch = method.getAnnotation(Batch.class);
+            final Class<?> messageType = batch == null ? parameterTypeFor(method, targetMethods) : elementTypeFor(method, targetMethods);
+            assertNotMapped(messageType);
+            if (HandlerMethod.isAsync(method)) {
+                assertAsyncAllowed(method, category, batch);
+            }
+            if (method.isAnnotationPresent(Blocking.class) || method.isAnnotationPresent(Stateless.class)) {
+                assertOffloadAllowed(method, batch);
+            }
+            add(new HandlerMethod(method, messageType, category, batch == null ? 0 : maxBatchSizeOf(method, batch)));
+        }
     }
 
-    private void addResponseMethods(final Method[] interfaceMethods) {
-        addMethodsToMap(interfaceMethods, responseMethods);
+    private void add(final HandlerMethod handler) {
+        handlers.put(handler.messageType(), handler);
+        resolutions.put(handler.messageType(), new Resolution(handler.messageType(), handler));
+        hasBatchHandlers |= handler.isBatch();
+        hasReplyingHandlers |= handler.isReplying();
+        hasOffloadedHandlers |= handler.isOffloaded();
+        hasAsyncHandlers |= handler.isAsync();
     }
 
-    private void addMessageMethods(final Method[] interfaceMethods) {
-        addMethodsToMap(interfaceMethods, messageMethods);
+    private void assertAsyncAllowed(final Method method, final HandlerCategory category, final Batch batch) {
+        if (category != HandlerCategory.REQUEST || batch != null) {
+            throw new IllegalArgumentException("Only request methods that are not batch methods can return a CompletionStage: " + method);
+        }
     }
 
-    private void addMethodsToMap(final Method[] interfaceMethods, final HashMap<Type, Method> methodMap) {
-        for (final Method method : interfaceMethods) {
-            final Type messageType = parameterTypeFor(method);
-            assertNotMapped(messageType);
-            methodMap.put(messageType, method);
+    private void assertOffloadAllowed(final Method method, final Batch batch) {
+        if (method.isAnnotationPresent(Blocking.class) && method.isAnnotationPresent(Stateless.class)) {
+            throw new IllegalArgumentException("A method cannot be both blocking and stateless: " + method);
+        }
+        if (batch != null || HandlerMethod.isAsync(method)) {
+            throw new IllegalArgumentException("Blocking and stateless methods can neither be batch methods nor return a CompletionStage: " +
+                                               method);
         }
     }
 
-    private void assertNotMapped(final Type type) {
-        if (alreadyMapped(type)) {
-            failOnClashingMessageType(type);
+    private Class<?> elementTypeFor(final Method batchMethod, final TargetMethod[] targetMethods) {
+        final Method targetMethod = getMethodFromTarget(batchMethod, targetMethods);
+        assertOnlyOneParameter(targetMethod.getParameterTypes());
+        final Type parameterType = targetMethod.getGenericParameterTypes()[0];
+        if (targetMethod.getParameterTypes()[0] != List.class || !(parameterType instanceof ParameterizedType)) {
+            throw new IllegalArgumentException("Batch method must have a parameter of type List<T>. Found " + parameterType + " in " +
+                                               targetMethod);
+        }
+        final Type elementType = ((ParameterizedType) parameterType).getActualTypeArguments()[0];
+        if (elementType instanceof Class) {
+            return (Class<?>) elementType;
+        }
+        if (elementType instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) elementType).getRawType();
+        }
+        throw new IllegalArgumentException("Unable to determine message type of batch method: " + targetMethod);
+    }
+
+    private int maxBatchSizeOf(final Method batchMethod, final Batch batch) {
+        if (batch.maxSize() < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be at least one (1). Found " + batch.maxSize() + " in " +
+                                               batchMethod);
         }
+        return batch.maxSize();
     }
 
-    private boolean alreadyMapped(final Type messageType) {
-        return responseMethods.containsKey(messageType) || requestMethods.containsKey(messageType) || messageMethods
-                .containsKey(messageType);
+    private void assertNotMapped(final Class<?> type) {
+        if (handlers.containsKey(type)) {
+            failOnClashingMessageType(type);
+        }
     }
 
     private void failOnClashingMessageType(final Type type) {
@@ -111,21 +415,23 @@ final class MethodRepository {
                 "Message type: " + type + " already mapped in target class: " + targetClass + ". Can only be mapped once.");
     }
 
-    private Type parameterTypeFor(final Method anInterfaceMethodWithObjectTypeParameters) {
-        final Method targetMethod = getMethodFromTarget(anInterfaceMethodWithObjectTypeParameters);
-        final Type[] parameterTypes = targetMethod.getParameterTypes();
+    private Class<?> parameterTypeFor(final Method anInterfaceMethodWithObjectTypeParameters, final TargetMethod[] targetMethods) {
+        final Method targetMethod = getMethodFromTarget(anInterfaceMethodWithObjectTypeParameters, targetMethods);
+        final Class<?>[] parameterTypes = targetMethod.getParameterTypes();
         assertOnlyOneParameter(parameterTypes);
         return parameterTypes[0];
     }
 
-    private Method getMethodFromTarget(final Method interfaceMethod) {
+    private Method getMethodFromTarget(final Method interfaceMethod, final TargetMethod[] targetMethods) {
+        final Class<?>[] parameterTypes = interfaceMethod.getParameterTypes();
+        final boolean genericMethod = parameterTypes.length > 0 && isGenericMethod(interfaceMethod);
         Method found = null;
-        for (final Method targetMethod : targetClass.getDeclaredMethods()) {
-            if (!interfaceMethod.equals(targetMethod) && isSimilar(interfaceMethod, targetMethod)) {
+        for (final TargetMethod targetMethod : targetMethods) {
+            if (!interfaceMethod.equals(targetMethod.method) && isSimilar(interfaceMethod, parameterTypes, genericMethod, targetMethod)) {
                 if (found != null) {
-                    throw new IllegalStateException("Found multiple matching methods: " + found + " and " + targetMethod);
+                    throw new IllegalStateException("Found multiple matching methods: " + found + " and " + targetMethod.method);
                 }
-                found = targetMethod;
+                found = targetMethod.method;
             }
         }
         if (found == null) {
@@ -140,31 +446,114 @@ final class MethodRepository {
         }
     }
 
-    private boolean isSimilar(final Method interfaceMethod, final Method targetMethod) {
-        if (interfaceMethod.getName().equals(targetMethod.getName()) && interfaceMethod.getParameterTypes().length == targetMethod
-                .getParameterTypes().length) {
-            if (isGenericMethod(interfaceMethod)) {
-                return isNonObjectClass(targetMethod.getGenericParameterTypes()[0]);
+    /**
+     * The parameter types and whether the interface method is generic are passed in, since getting them from a method copies or parses them
+     * on every call.
+     */
+    private boolean isSimilar(final Method interfaceMethod, final Class<?>[] interfaceParameterTypes, final boolean genericInterfaceMethod,
+                              final TargetMethod targetMethod) {
+        if (interfaceMethod.getName().equals(targetMethod.method.getName()) && interfaceParameterTypes.length == targetMethod
+                .parameterTypes.length) {
+            if (genericInterfaceMethod) {
+                return isNonObjectClass(targetMethod.method.getGenericParameterTypes()[0]);
             }
-            return hasSameParameterTypes(interfaceMethod, targetMethod);
+            return interfaceParameterTypes[0].equals(targetMethod.parameterTypes[0]);
         }
         return false;
     }
 
     private boolean isGenericMethod(final Method method) {
-        return !(method.getGenericParameterTypes()[0] instanceof Class);
+        final Type parameterType = method.getGenericParameterTypes()[0];
+        return !(parameterType instanceof Class || parameterType instanceof ParameterizedType);
     }
 
     private boolean isNonObjectClass(final Type type) {
         return type instanceof Class && !Object.class.equals(type);
     }
 
-    private boolean hasSameParameterTypes(final Method interfaceMethod, final Method targetMethod) {
-        return interfaceMethod.getParameterTypes()[0].equals(targetMethod.getParameterTypes()[0]);
+    /**
+     * A method declared by the target class together with its parameter types. The methods are fetched once per target class since both
+     * {@link Class#getDeclaredMethods()} and {@link Method#getParameterTypes()} return copies.
+     */
+    private static final class TargetMethod {
+        private final Method method;
+        private final Class<?>[] parameterTypes;
+
+        private TargetMethod(final Method method) {
+            this.method = method;
+            this.parameterTypes = method.getParameterTypes();
+        }
+
+        private static TargetMethod[] declaredBy(final Class<?> targetClass) {
+            final Method[] methods = targetClass.getDeclaredMethods();
+            final TargetMethod[] targetMethods = new TargetMethod[methods.length];
+            for (int i = 0; i < methods.length; ++i) {
+                targetMethods[i] = new TargetMethod(methods[i]);
+            }
+            return targetMethods;
+        }
+    }
+
+    /**
+     * The resolved method for a message class. A resolution without a method counts the messages that were left unhandled and remembers if
+     * one of them has been reported.
+     */
+    @ThreadSafe
+    static final class Resolution {
+        private final Class<?> messageClass;
+        private final HandlerMethod method;
+        private final LongAdder unhandled;
+        private final AtomicBoolean reported;
+
+        private Resolution(final Class<?> messageClass, final HandlerMethod method) {
+            this.messageClass = messageClass;
+            this.method = method;
+            this.unhandled = method == null ? new LongAdder() : null;
+            this.reported = method == null ? new AtomicBoolean() : null;
+        }
+
+        Class<?> messageClass() {
+            return messageClass;
+        }
+
+        /**
+         * @return the method that receives messages of the class, or {@code null} if they are not handled
+         */
+        HandlerMethod method() {
+            return method;
+        }
+    }
+
+    /**
+     * @return {@code true} if any method of the target class is a {@link Batch} method
+     */
+    boolean hasBatchHandlers() {
+        return hasBatchHandlers;
+    }
+
+    /**
+     * @return {@code true} if any request method of the target class replies with its return value
+     */
+    boolean hasReplyingHandlers() {
+        return hasReplyingHandlers;
+    }
+
+    /**
+     * @return {@code true} if the target class has any {@link Blocking} or {@link Stateless} methods
+     */
+    boolean hasOffloadedHandlers() {
+        return hasOffloadedHandlers;
+    }
+
+    /**
+     * @return {@code true} if any request method of the target class returns a {@link java.util.concurrent.CompletionStage}
+     */
+    boolean hasAsyncHandlers() {
+        return hasAsyncHandlers;
     }
 
     int numberOfMappedMethods() {
-        return messageMethods.size() + requestMethods.size() + responseMethods.size();
+        return handlers.size();
     }
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a static method of an actor class as the method that extracts the shard key of one of the message types the actor handles. The
+ * method takes a single parameter, the message type, and returns the key, which must not be {@code null}. Messages with equal keys are
+ * always routed to the same routee by a {@link ShardedPool}.
+ * <p>
+ * Keys are hashed by their string representation, see {@link String#valueOf(Object)}, so keys that are equal must have equal strings. Every
+ * message type that the actor handles must have a key method, otherwise the actor class is rejected by the {@link ShardedPool}.
+ * </p>
+ * <pre>
+ * public class OrderActor extends MessageDelegatingActor implements Messages1&lt;Order&gt; {
+ *     &#64;ShardKey
+ *     static Object customerOf(Order order) {
+ *         return order.customerId();
+ *     }
+ *
+ *     public void onMessage(Order order) {
+ *         ...
+ *     }
+ * }</pre>
+ *
+ * @author Daniel Sawano
+ * @see ShardedPool
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ShardKey {
+}
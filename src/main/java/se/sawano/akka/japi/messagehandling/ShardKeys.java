@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.Immutable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+import static se.sawano.akka.japi.messagehandling.MethodRepository.repositoryFor;
+
+/**
+ * The {@link ShardKey} methods of an actor class, keyed by the message type they extract keys from. Like repositories they are created once
+ * per actor class, see {@link #shardKeysFor(Class)}.
+ * <p>
+ * The shard key of a message is extracted by the method for the type the message is mapped to by the {@link MethodRepository} of the actor
+ * class, so it is found for subtypes just as the receiving method is. Messages that the actor class does not handle have no key and are not
+ * routed. Every handled message type must have a key method. A message keyed by its own string representation would be keyed by its
+ * identity unless it overrides {@link Object#toString()}, so equal messages would not be received in order.
+ * </p>
+ * <p>
+ * Keys are returned as strings, see {@link String#valueOf(Object)}. The router serializes any other key with the serialization of the actor
+ * system to hash it, which is costly for every message and fails for keys that are not serializable, in which case the router drops the
+ * message.
+ * </p>
+ * <p>
+ * The mapper interface is declared in the deprecated {@code ConsistentHashingRouter}, but it is still the one {@link
+ * akka.routing.ConsistentHashingPool} takes, so the deprecation is suppressed.
+ * </p>
+ *
+ * @author Daniel Sawano
+ */
+@Immutable
+@SuppressWarnings("deprecation")
+final class ShardKeys implements akka.routing.ConsistentHashingRouter.ConsistentHashMapper {
+
+    private static final MethodType EXTRACTOR_TYPE = methodType(Object.class, Object.class);
+
+    private static final ClassValue<ShardKeys> SHARD_KEYS = new ClassValue<ShardKeys>() {
+        @Override
+        protected ShardKeys computeValue(final Class<?> type) {
+            return new ShardKeys(type);
+        }
+    };
+
+    /**
+     * @throws IllegalArgumentException
+     *         if unable to map the actor class or one of its {@link ShardKey} methods, or if a handled message type has no such method
+     * @throws IllegalStateException
+     *         if unable to map the actor class
+     */
+    static ShardKeys shardKeysFor(final Class<?> actorClass) {
+        requireNonNull(actorClass);
+
+        return SHARD_KEYS.get(actorClass);
+    }
+
+    private final MethodRepository repository;
+    private final HashMap<Class<?>, MethodHandle> extractors = new HashMap<>();
+
+    private ShardKeys(final Class<?> actorClass) {
+        this.repository = repositoryFor(actorClass);
+        if (repository.numberOfMappedMethods() == 0) {
+            throw new IllegalArgumentException("Actor class: " + actorClass + " does not handle any message types");
+        }
+        for (final Method method : actorClass.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(ShardKey.class)) {
+                addExtractor(actorClass, method);
+            }
+        }
+        for (final Class<?> messageType : repository.handlers().keySet()) {
+            if (!extractors.containsKey(messageType)) {
+                throw new IllegalArgumentException("Message type: " + messageType + " has no shard key method in actor class: " +
+                                                   actorClass);
+            }
+        }
+    }
+
+    private void addExtractor(final Class<?> actorClass, final Method method) {
+        if (!Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 1 || method.getReturnType() == void.class) {
+            throw new IllegalArgumentException("Shard key method must be static, take one (1) parameter and return the key: " + method);
+        }
+        final Class<?> messageType = method.getParameterTypes()[0];
+        if (!repository.handlers().containsKey(messageType)) {
+            throw new IllegalArgumentException("Message type: " + messageType + " of shard key method: " + method +
+                                               " is not mapped in actor class: " + actorClass);
+        }
+        if (extractors.containsKey(messageType)) {
+            throw new IllegalArgumentException("Message type: " + messageType + " has more than one shard key method in actor class: " +
+                                               actorClass);
+        }
+        method.setAccessible(true);
+        try {
+            extractors.put(messageType, MethodHandles.lookup().unreflect(method).asType(EXTRACTOR_TYPE));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to access method: " + method, e);
+        }
+    }
+
+    /**
+     * @return the shard key of the message as a string, or {@code null} if the actor class does not handle it
+     *
+     * @throws DelegateException
+     *         if the shard key method throws an exception
+     */
+    @Override
+    public Object hashKey(final Object message) {
+        final HandlerMethod handler = handlerOf(message);
+        if (handler == null) {
+            return null;
+        }
+        try {
+            return String.valueOf((Object) extractors.get(handler.messageType()).invokeExact(message));
+        } catch (Throwable e) {
+            throw new DelegateException("Exception while extracting shard key", e);
+        }
+    }
+
+    /**
+     * A message with an ambiguous type is not handled here, it would fail when received.
+     */
+    private HandlerMethod handlerOf(final Object message) {
+        try {
+            return repository.handlerOf(message.getClass());
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.routing.ActorRefRoutee;
+import akka.routing.ConsistentHashingPool;
+import akka.routing.Routee;
+import akka.routing.Routees;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates pools of actors that handle messages with the same shard key in the same routee, so that messages for one key are received in the
+ * order they were sent while messages for different keys are handled in parallel. Routees are picked by consistent hashing of the key, see
+ * {@link ConsistentHashingPool}. The key of a message is extracted by the {@link ShardKey} method of the routees' actor class for the
+ * message's type, which every handled message type must have.
+ * <p>
+ * Only messages that the actor class handles are routed, which is decided by the same mapping that its {@link MethodDelegate} uses. Other
+ * messages are logged and sent to dead letters by the router.
+ * </p>
+ * <pre>
+ * final ActorRef orders = system.actorOf(ShardedPool.props(Props.create(OrderActor.class), 8), "orders");</pre>
+ * <p>
+ * Skew between routees can be detected by comparing their queue depths, see {@link #queueDepths(Routees)}. The routees of a router are
+ * requested with {@link akka.routing.GetRoutees}.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see ShardKey
+ */
+public final class ShardedPool {
+
+    private ShardedPool() {
+    }
+
+    /**
+     * @param routeeProps
+     *         the props of the routees
+     * @param numberOfRoutees
+     *         the number of routees in the pool, typically the number of cores
+     *
+     * @return props of a router that routes messages to a pool of routees by shard key
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the actor class of the routees, or one of its {@link ShardKey} methods, or if a handled message type has no
+     *         such method
+     * @throws IllegalStateException
+     *         if unable to map the actor class of the routees
+     */
+    public static Props props(final Props routeeProps, final int numberOfRoutees) {
+        requireNonNull(routeeProps);
+
+        return routeeProps.withRouter(new ConsistentHashingPool(numberOfRoutees).withHashMapper(hashMapperFor(routeeProps.actorClass())));
+    }
+
+    /**
+     * Returns a mapper that extracts shard keys from messages to the given actor class. Useful for routers that are configured by other
+     * means than {@link #props(Props, int)}, e.g. consistent hashing groups. The mapper returns {@code null} for messages that the actor
+     * class does not handle. The mapper interface is declared in the deprecated {@code ConsistentHashingRouter}, but it is still the one
+     * consistent hashing routers take.
+     *
+     * @param actorClass
+     *         the actor class of the routees
+     *
+     * @return the mapper for the actor class
+     *
+     * @throws IllegalArgumentException
+     *         if unable to map the actor class, or one of its {@link ShardKey} methods, or if a handled message type has no such method
+     * @throws IllegalStateException
+     *         if unable to map the actor class
+     */
+    @SuppressWarnings("deprecation")
+    public static akka.routing.ConsistentHashingRouter.ConsistentHashMapper hashMapperFor(final Class<?> actorClass) {
+        return ShardKeys.shardKeysFor(actorClass);
+    }
+
+    /**
+     * @param routees
+     *         the routees of a router, as replied to {@link akka.routing.GetRoutees}
+     *
+     * @return the number of messages in the mailbox of each routee, see {@link #queueDepthOf(ActorRef)}
+     */
+    public static List<Integer> queueDepths(final Routees routees) {
+        requireNonNull(routees);
+
+        final List<Integer> depths = new ArrayList<>();
+        for (final Routee routee : routees.getRoutees()) {
+            depths.add(routee instanceof ActorRefRoutee ? queueDepthOf(((ActorRefRoutee) routee).ref()) : -1);
+        }
+        return depths;
+    }
+
+    /**
+     * Returns the number of messages in the mailbox of a local actor. Counting may take time proportional to the number of messages, so this
+     * is meant for monitoring rather than for routing decisions. The mailbox is only reachable through internals of Akka, if they are not
+     * there the depth is unknown.
+     *
+     * @param actor
+     *         the actor to get the queue depth of
+     *
+     * @return the number of messages in the mailbox of the actor, or {@code -1} if the actor is not local or the depth is unknown
+     */
+    public static int queueDepthOf(final ActorRef actor) {
+        requireNonNull(actor);
+
+        try {
+            return localQueueDepthOf(actor);
+        } catch (LinkageError e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Kept apart from {@link #queueDepthOf(ActorRef)}, so that missing Akka internals fail when this method is linked and can be caught.
+     */
+    private static int localQueueDepthOf(final ActorRef actor) {
+        return actor instanceof akka.actor.ActorRefWithCell ? ((akka.actor.ActorRefWithCell) actor).underlying().numberOfMessages() : -1;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a contract as stateless, i.e. as a pure function of its message such as a validation or a transformation. A {@link
+ * MessageDelegatingActor} invokes stateless methods on the dispatcher named by {@link #dispatcher()}, by default one backed by a fork join
+ * pool, so that calls to them run in parallel instead of one at a time through the mailbox of the actor.
+ * <pre>
+ * public interface Validator extends Requests {
+ *     &#64;Stateless
+ *     ValidationResult onRequest(Order request);
+ * }</pre>
+ * <p>
+ * Apart from not being expected to block, a stateless method is handled just like a {@link Blocking} one. A request method that returns a
+ * value replies with it, or with a {@link akka.actor.Status.Failure} if it fails, and a failure of any other stateless method is thrown by
+ * the actor. A stateless method must neither touch the state of the actor nor call {@code getSender()}, and messages for it are not handled
+ * in order. All other methods of the actor keep being invoked one message at a time.
+ * </p>
+ *
+ * @author Daniel Sawano
+ * @see MessageDelegatingActor#offloadExecutor(String)
+ * @see MessageDelegatingActor#maxRequestsInFlight()
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Stateless {
+
+    /**
+     * The id of the dispatcher that is used if a stateless method does not name a dispatcher of its own. It is configured in the {@code
+     * reference.conf} of this library, where its maximum parallelism can be changed.
+     */
+    String DEFAULT_DISPATCHER = "se.sawano.akka.japi.messagehandling.stateless-dispatcher";
+
+    /**
+     * @return the id of the dispatcher to invoke the method on, or an empty string for {@link #DEFAULT_DISPATCHER}
+     */
+    String dispatcher() default "";
+}
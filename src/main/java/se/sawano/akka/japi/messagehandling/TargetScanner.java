@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import net.jcip.annotations.Immutable;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Finds the classes in a package, and its subpackages, that can be the target of a {@link MethodDelegate}. Packages are read from
+ * directories and jar files on the class path of the given class loader, other kinds of class path entries are ignored.
+ *
+ * @author Daniel Sawano
+ */
+@Immutable
+final class TargetScanner {
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final ClassLoader classLoader;
+
+    TargetScanner(final ClassLoader classLoader) {
+        requireNonNull(classLoader);
+
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @return the concrete classes that implement {@link Messages}, {@link Requests} or {@link Responses}, sorted by name. A class that
+     * is in several class path entries is only included once. Generated dispatchers and clients are not included.
+     *
+     * @throws IllegalArgumentException
+     *         if the package cannot be read
+     */
+    List<Class<?>> targetsIn(final String packageName) {
+        requireNonNull(packageName);
+
+        final String path = packageName.replace('.', '/');
+        final SortedSet<String> classNames = new TreeSet<>();
+        try {
+            final Enumeration<URL> resources = classLoader.getResources(path);
+            while (resources.hasMoreElements()) {
+                addClassNames(resources.nextElement(), path, classNames);
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new IllegalArgumentException("Unable to read package: " + packageName, e);
+        }
+        final List<Class<?>> targets = new ArrayList<>();
+        for (final String className : classNames) {
+            final Class<?> type = load(className);
+            if (type != null && isTarget(type)) {
+                targets.add(type);
+            }
+        }
+        return targets;
+    }
+
+    private static void addClassNames(final URL resource, final String path, final SortedSet<String> classNames) throws IOException,
+            URISyntaxException {
+        if ("file".equals(resource.getProtocol())) {
+            addClassNames(new File(resource.toURI()), path, classNames);
+        }
+        else if ("jar".equals(resource.getProtocol())) {
+            final JarURLConnection connection = (JarURLConnection) resource.openConnection();
+            // A cached jar file may be shared with class loaders, so it must not be closed
+            connection.setUseCaches(false);
+            try (JarFile jar = connection.getJarFile()) {
+                final Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    final String name = entries.nextElement().getName();
+                    if (name.startsWith(path + '/') && name.endsWith(CLASS_SUFFIX)) {
+                        classNames.add(classNameOf(name));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addClassNames(final File directory, final String path, final SortedSet<String> classNames) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            final String name = path + '/' + file.getName();
+            if (file.isDirectory()) {
+                addClassNames(file, name, classNames);
+            }
+            else if (name.endsWith(CLASS_SUFFIX)) {
+                classNames.add(classNameOf(name));
+            }
+        }
+    }
+
+    private static String classNameOf(final String resourceName) {
+        return resourceName.substring(0, resourceName.length() - CLASS_SUFFIX.length()).replace('/', '.');
+    }
+
+    /**
+     * Classes are loaded without being initialized. Classes that cannot be linked, e.g. since an optional dependency is missing, are
+     * skipped.
+     */
+    private Class<?> load(final String className) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    static boolean isTarget(final Class<?> type) {
+        return !type.isInterface() && !Modifier.isAbstract(type.getModifiers()) && !type.isAnonymousClass() && !type.isLocalClass() &&
+               !type.isSynthetic() && (Messages.class.isAssignableFrom(type) || Requests.class.isAssignableFrom(type) ||
+                                       Responses.class.isAssignableFrom(type)) && !ContractClient.class.isAssignableFrom(type) &&
+               !GeneratedDispatcher.class.isAssignableFrom(type);
+    }
+}
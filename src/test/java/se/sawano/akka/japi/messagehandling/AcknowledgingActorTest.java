@@ -19,11 +19,15 @@ package se.sawano.akka.japi.messagehandling;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import akka.actor.UnhandledMessage;
 import akka.testkit.JavaTestKit;
 import akka.testkit.TestActorRef;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import se.sawano.akka.japi.messagehandling.predef.Messages1;
+
+import static org.junit.Assert.assertEquals;
 
 public class AcknowledgingActorTest {
 
@@ -56,4 +60,30 @@ public class AcknowledgingActorTest {
         }};
     }
 
+    @Test
+    public void shouldOnlyPublishFirstUnhandledMessageOfEachTypeIfDroppingRepeated() throws Exception {
+        new JavaTestKit(system) {{
+            getSystem().eventStream().subscribe(getRef(), UnhandledMessage.class);
+            final ActorRef droppingActor = getSystem().actorOf(Props.create(DroppingActor.class), "dropping-actor");
+            droppingActor.tell("first", getRef());
+            droppingActor.tell("second", getRef());
+            droppingActor.tell(Long.valueOf(1), getRef());
+
+            assertEquals("first", expectMsgClass(UnhandledMessage.class).message());
+            assertEquals(Long.valueOf(1), expectMsgClass(UnhandledMessage.class).message());
+            expectNoMsg();
+        }};
+    }
+
+    public static class DroppingActor extends MessageDelegatingActor implements Messages1<Integer> {
+        @Override
+        public void onMessage(Integer message) {
+        }
+
+        @Override
+        protected boolean dropRepeatedUnhandledMessages() {
+            return true;
+        }
+    }
+
 }
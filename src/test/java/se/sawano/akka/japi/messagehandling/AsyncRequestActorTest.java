@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.Status;
+import akka.testkit.JavaTestKit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.Assert.*;
+
+public class AsyncRequestActorTest {
+
+    ActorSystem system;
+    ConcurrentMap<Integer, CompletableFuture<String>> futures;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create();
+        futures = new ConcurrentHashMap<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldReplyWhenStagesCompleteWhileHandlingOtherMessages() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef asyncActor = getSystem().actorOf(Props.create(AsyncActor.class, futures, false));
+            asyncActor.tell(1, getRef());
+            asyncActor.tell(2, getRef());
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+
+            futureFor(2).complete("two");
+            expectMsgEquals("two");
+            futureFor(1).complete("one");
+            expectMsgEquals("one");
+        }};
+    }
+
+    @Test
+    public void shouldReplyInRequestOrderIfPreservingOrder() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef asyncActor = getSystem().actorOf(Props.create(AsyncActor.class, futures, true));
+            asyncActor.tell(1, getRef());
+            asyncActor.tell(2, getRef());
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+
+            futureFor(2).complete("two");
+            expectNoMsg();
+            futureFor(1).complete("one");
+            expectMsgEquals("one");
+            expectMsgEquals("two");
+        }};
+    }
+
+    @Test
+    public void shouldReplyWithFailureIfStageFails() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef asyncActor = getSystem().actorOf(Props.create(AsyncActor.class, futures, false));
+            asyncActor.tell(1, getRef());
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+
+            final IllegalStateException failure = new IllegalStateException("boom");
+            futureFor(1).completeExceptionally(failure);
+            assertSame(failure, expectMsgClass(Status.Failure.class).cause());
+        }};
+    }
+
+    @Test
+    public void shouldBoundRequestsInFlight() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef asyncActor = getSystem().actorOf(Props.create(AsyncActor.class, futures, false));
+            asyncActor.tell(1, getRef());
+            asyncActor.tell(2, getRef());
+            asyncActor.tell(3, getRef());
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+            assertFalse(futures.containsKey(3));
+
+            futureFor(1).complete("one");
+            expectMsgEquals("one");
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+            assertTrue(futures.containsKey(3));
+        }};
+    }
+
+    @Test
+    public void shouldReplyWithFailureToWaitingRequestsWhenStopped() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef asyncActor = getSystem().actorOf(Props.create(AsyncActor.class, futures, false));
+            asyncActor.tell(1, getRef());
+            asyncActor.tell(2, getRef());
+            asyncActor.tell(3, getRef());
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+
+            getSystem().stop(asyncActor);
+            expectMsgClass(Status.Failure.class);
+            assertFalse(futures.containsKey(3));
+        }};
+    }
+
+    @Test
+    public void shouldStartRemainingWaitingRequestsIfOneFailsToStart() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef asyncActor = getSystem().actorOf(Props.create(AsyncActor.class, futures, false));
+            asyncActor.tell(1, getRef());
+            asyncActor.tell(2, getRef());
+            asyncActor.tell(-1, getRef());
+            asyncActor.tell(3, getRef());
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+
+            futureFor(1).complete("one");
+            expectMsgEquals("one");
+            assertTrue(expectMsgClass(Status.Failure.class).cause() instanceof IllegalArgumentException);
+            asyncActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+            assertTrue(futures.containsKey(3));
+        }};
+    }
+
+    @Test
+    public void shouldReplyWithFailureIfRequestThrows() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef asyncActor = getSystem().actorOf(Props.create(AsyncActor.class, futures, false));
+            asyncActor.tell(1, getRef());
+            asyncActor.tell(-1, getRef());
+
+            assertTrue(expectMsgClass(Status.Failure.class).cause() instanceof IllegalArgumentException);
+            futureFor(1).complete("one");
+            expectMsgEquals("one");
+        }};
+    }
+
+    private CompletableFuture<String> futureFor(final int request) {
+        return futures.get(request);
+    }
+
+    public interface AsyncContract extends Requests {
+        CompletionStage<String> onRequest(Integer request);
+
+        void onRequest(String request);
+    }
+
+    public static class AsyncActor extends MessageDelegatingActor implements AsyncContract {
+        private final ConcurrentMap<Integer, CompletableFuture<String>> futures;
+        private final boolean ordered;
+
+        public AsyncActor(final ConcurrentMap<Integer, CompletableFuture<String>> futures, final boolean ordered) {
+            this.futures = futures;
+            this.ordered = ordered;
+        }
+
+        @Override
+        public CompletionStage<String> onRequest(final Integer request) {
+            if (request < 0) {
+                throw new IllegalArgumentException("Negative request: " + request);
+            }
+            final CompletableFuture<String> future = new CompletableFuture<>();
+            futures.put(request, future);
+            return future;
+        }
+
+        @Override
+        public void onRequest(final String request) {
+            getSender().tell("pong", getSelf());
+        }
+
+        @Override
+        protected int maxRequestsInFlight() {
+            return 2;
+        }
+
+        @Override
+        protected boolean preserveReplyOrder() {
+            return ordered;
+        }
+    }
+}
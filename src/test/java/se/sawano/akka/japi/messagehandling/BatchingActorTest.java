@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.JavaTestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.Option;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BatchingActorTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create("BatchingActorTest", ConfigFactory.parseString(
+                "priority-mailbox.mailbox-type = \"" + ContractPriorityMailbox.class.getName() + "\"\n" +
+                "priority-mailbox.actor-class = \"" + BatchingActor.class.getName() + "\""));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldDeliverConsecutiveQueuedMessagesInBatches() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef batchingActor = getSystem().actorOf(Props.create(BatchingActor.class, getRef()), "batching-actor");
+            final CountDownLatch latch = new CountDownLatch(1);
+            batchingActor.tell(latch, getRef());
+            for (int i = 1; i <= 5; ++i) {
+                batchingActor.tell(i, getRef());
+            }
+            batchingActor.tell("in between", getRef());
+            batchingActor.tell(6, getRef());
+            batchingActor.tell(7, getRef());
+            latch.countDown();
+
+            expectMsgEquals(Arrays.asList(1, 2, 3, 4));
+            expectMsgEquals("in between");
+            expectMsgEquals(Arrays.asList(5, 6, 7));
+            expectNoMsg();
+        }};
+    }
+
+    @Test
+    public void shouldDeliverBatchesWithContractPriorityMailbox() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef batchingActor = getSystem().actorOf(Props.create(BatchingActor.class, getRef()).withMailbox("priority-mailbox"),
+                                                               "batching-actor");
+            final CountDownLatch latch = new CountDownLatch(1);
+            batchingActor.tell(latch, getRef());
+            for (int i = 1; i <= 3; ++i) {
+                batchingActor.tell(i, getRef());
+            }
+            latch.countDown();
+
+            expectMsgEquals(Arrays.asList(1, 2, 3));
+            expectNoMsg();
+        }};
+    }
+
+    @Test
+    public void shouldDeliverSingleMessageWhenMailboxIsEmpty() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef batchingActor = getSystem().actorOf(Props.create(BatchingActor.class, getRef()), "batching-actor");
+            batchingActor.tell(1, getRef());
+            expectMsgEquals(Arrays.asList(1));
+
+            batchingActor.tell(2, getRef());
+            expectMsgEquals(Arrays.asList(2));
+        }};
+    }
+
+    @Test
+    public void shouldNotLoseOrBlameOtherMessageWhenBatchFails() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef batchingActor = getSystem().actorOf(Props.create(BatchingActor.class, getRef()), "batching-actor");
+            final CountDownLatch latch = new CountDownLatch(1);
+            batchingActor.tell(latch, getRef());
+            batchingActor.tell(-1, getRef());
+            batchingActor.tell("after", getRef());
+            latch.countDown();
+
+            expectMsgEquals("after");
+            expectMsgEquals("restarted on EndOfBatch");
+            expectNoMsg();
+        }};
+    }
+
+    @Test
+    public void shouldDeliverPendingBatchToNewInstanceOnRestart() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef batchingActor = getSystem().actorOf(Props.create(BatchingActor.class, getRef()), "batching-actor");
+            final CountDownLatch latch = new CountDownLatch(1);
+            batchingActor.tell(latch, getRef());
+            batchingActor.tell(1, getRef());
+            batchingActor.tell("fail", getRef());
+            latch.countDown();
+
+            expectMsgEquals("restarted on fail");
+            expectMsgEquals(Arrays.asList(1));
+            expectNoMsg();
+        }};
+    }
+
+    public interface SampleContract extends Messages {
+        @Batch(maxSize = 4)
+        void onSamples(List<Integer> samples);
+
+        void onMessage(String message);
+
+        void onMessage(CountDownLatch latch) throws InterruptedException;
+    }
+
+    public static class BatchingActor extends MessageDelegatingActor implements SampleContract {
+        private final ActorRef probe;
+
+        public BatchingActor(final ActorRef probe) {
+            this.probe = probe;
+        }
+
+        @Override
+        public void onSamples(final List<Integer> samples) {
+            if (samples.contains(-1)) {
+                throw new IllegalArgumentException("Negative sample");
+            }
+            probe.tell(samples, getSelf());
+        }
+
+        @Override
+        public void onMessage(final String message) {
+            if ("fail".equals(message)) {
+                throw new IllegalStateException("Failing on request");
+            }
+            probe.tell(message, getSelf());
+        }
+
+        @Override
+        public void preRestart(final Throwable reason, final Option<Object> message) throws Exception {
+            probe.tell("restarted on " + message.get(), getSelf());
+            super.preRestart(reason, message);
+        }
+
+        @Override
+        public void onMessage(final CountDownLatch latch) throws InterruptedException {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
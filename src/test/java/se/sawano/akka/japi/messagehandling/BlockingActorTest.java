@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.Status;
+import akka.testkit.JavaTestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.Option;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BlockingActorTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create("BlockingActorTest", ConfigFactory.parseString("io-dispatcher.executor = thread-pool-executor")
+                                                                       .withFallback(ConfigFactory.load()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldInvokeBlockingMethodsOnTheirDispatchers() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef blockingActor = getSystem().actorOf(Props.create(BlockingActor.class, getRef()));
+            blockingActor.tell(1L, getRef());
+            assertTrue(expectMsgClass(String.class).contains(Blocking.DEFAULT_DISPATCHER));
+            blockingActor.tell(1, getRef());
+            assertTrue(expectMsgClass(String.class).contains("io-dispatcher"));
+        }};
+    }
+
+    @Test
+    public void shouldHandleOtherMessagesWhileBlocking() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef blockingActor = getSystem().actorOf(Props.create(BlockingActor.class, getRef()));
+            final CountDownLatch latch = new CountDownLatch(1);
+            blockingActor.tell(latch, getRef());
+            blockingActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+
+            latch.countDown();
+            expectMsgEquals("released");
+        }};
+    }
+
+    @Test
+    public void shouldInvokeBlockingMethodsOneAtATimeInOrder() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef blockingActor = getSystem().actorOf(Props.create(BlockingActor.class, getRef()));
+            final CountDownLatch latch = new CountDownLatch(1);
+            blockingActor.tell(latch, getRef());
+            blockingActor.tell(1L, getRef());
+            blockingActor.tell("ping", getRef());
+            expectMsgEquals("pong");
+            expectNoMsg(duration("300 milliseconds"));
+
+            latch.countDown();
+            expectMsgEquals("released");
+            assertTrue(expectMsgClass(String.class).contains(Blocking.DEFAULT_DISPATCHER));
+        }};
+    }
+
+    @Test
+    public void shouldInvokeConcurrentBlockingMethodsInParallel() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef blockingActor = getSystem().actorOf(Props.create(BlockingActor.class, getRef()));
+            final CountDownLatch latch = new CountDownLatch(1);
+            blockingActor.tell(latch, getRef());
+            blockingActor.tell((short) 1, getRef());
+            expectMsgEquals("concurrent");
+
+            latch.countDown();
+            expectMsgEquals("released");
+        }};
+    }
+
+    @Test
+    public void shouldReplyWithFailureIfBlockingRequestFails() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef blockingActor = getSystem().actorOf(Props.create(BlockingActor.class, getRef()));
+            blockingActor.tell(-1L, getRef());
+            assertEquals("negative", expectMsgClass(Status.Failure.class).cause().getMessage());
+        }};
+    }
+
+    @Test
+    public void shouldThrowFailureOfBlockingMessageMethodInActor() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef blockingActor = getSystem().actorOf(Props.create(BlockingActor.class, getRef()));
+            blockingActor.tell(-1.0d, getRef());
+            assertTrue(expectMsgClass(DelegateException.class).getCause() instanceof IllegalArgumentException);
+        }};
+    }
+
+    public interface Store extends Requests {
+        @Blocking
+        String onRequest(Long request);
+
+        @Blocking(dispatcher = "io-dispatcher")
+        String onRequest(Integer request);
+
+        @Blocking
+        String onRequest(CountDownLatch request);
+
+        @Blocking(concurrent = true)
+        String onRequest(Short request);
+
+        String onRequest(String request);
+    }
+
+    public interface Events extends Messages {
+        @Blocking
+        void onMessage(Double message);
+    }
+
+    public static class BlockingActor extends MessageDelegatingActor implements Store, Events {
+        private final ActorRef probe;
+
+        public BlockingActor(final ActorRef probe) {
+            this.probe = probe;
+        }
+
+        @Override
+        public String onRequest(final Long request) {
+            if (request < 0) {
+                throw new IllegalArgumentException("negative");
+            }
+            return Thread.currentThread().getName();
+        }
+
+        @Override
+        public String onRequest(final Integer request) {
+            return Thread.currentThread().getName();
+        }
+
+        @Override
+        public String onRequest(final CountDownLatch request) {
+            try {
+                return request.await(3, TimeUnit.SECONDS) ? "released" : "timed out";
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public String onRequest(final Short request) {
+            return "concurrent";
+        }
+
+        @Override
+        public String onRequest(final String request) {
+            return "pong";
+        }
+
+        @Override
+        public void onMessage(final Double message) {
+            throw new IllegalArgumentException("negative");
+        }
+
+        @Override
+        public void preRestart(final Throwable reason, final Option<Object> message) throws Exception {
+            probe.tell(reason, getSelf());
+            super.preRestart(reason, message);
+        }
+    }
+}
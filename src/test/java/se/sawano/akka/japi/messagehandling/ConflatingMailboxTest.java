@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.dispatch.Envelope;
+import akka.event.Logging;
+import akka.testkit.JavaTestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import se.sawano.akka.japi.messagehandling.predef.Messages2;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConflatingMailboxTest {
+
+    ActorSystem system;
+    ConflatingMailbox.ConflatingMessageQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create("conflating", ConfigFactory.parseString(
+                "conflating-mailbox.mailbox-type = \"" + ConflatingMailbox.class.getName() + "\""));
+        queue = new ConflatingMailbox.ConflatingMessageQueue();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldReplaceQueuedMessageWithSameKey() {
+        enqueue(new Price("A", 1));
+        enqueue("other");
+        enqueue(new Price("B", 2));
+        enqueue(new Price("A", 3));
+
+        assertEquals(3, queue.numberOfMessages());
+        assertEquals(new Price("A", 3), dequeue());
+        assertEquals("other", dequeue());
+        assertEquals(new Price("B", 2), dequeue());
+        assertFalse(queue.hasMessages());
+        assertEquals(1, queue.numberOfConflatedMessages());
+    }
+
+    @Test
+    public void shouldMergeQueuedMessageWithSameKey() {
+        enqueue(new HitCount("A", 1));
+        enqueue(new HitCount("A", 2));
+        enqueue(new HitCount("A", 3));
+
+        assertEquals(new HitCount("A", 6), dequeue());
+        assertNull(queue.dequeue());
+    }
+
+    @Test
+    public void shouldQueueMessageAsIsWhenMergeFails() {
+        enqueue(new HitCount("A", 1));
+        enqueue(new HitCount("A", -1));
+        enqueue(new HitCount("A", 0));
+        enqueue(new HitCount("A", 2));
+
+        assertEquals(3, queue.numberOfMessages());
+        assertEquals(new HitCount("A", 3), dequeue());
+        assertEquals(new HitCount("A", -1), dequeue());
+        assertEquals(new HitCount("A", 0), dequeue());
+        assertEquals(1, queue.numberOfConflatedMessages());
+    }
+
+    @Test
+    public void shouldPublishFailureToMerge() {
+        new JavaTestKit(system) {{
+            getSystem().eventStream().subscribe(getRef(), Logging.Error.class);
+            queue = new ConflatingMailbox.ConflatingMessageQueue(getSystem().eventStream());
+            enqueue(new HitCount("A", 1));
+            enqueue(new HitCount("A", -1));
+
+            final Logging.Error error = expectMsgClass(Logging.Error.class);
+            assertTrue(error.cause() instanceof IllegalArgumentException);
+            assertEquals(2, queue.numberOfMessages());
+        }};
+    }
+
+    @Test
+    public void shouldQueueMessageWithSameKeyAfterPreviousWasDequeued() {
+        enqueue(new Price("A", 1));
+        assertEquals(new Price("A", 1), dequeue());
+        enqueue(new Price("A", 2));
+
+        assertEquals(new Price("A", 2), dequeue());
+        assertEquals(0, queue.numberOfConflatedMessages());
+    }
+
+    @Test
+    public void shouldOnlyDeliverLatestPendingMessageToActor() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef priceActor = getSystem().actorOf(Props.create(PriceActor.class, getRef()).withMailbox("conflating-mailbox"));
+            final CountDownLatch latch = new CountDownLatch(1);
+            priceActor.tell(latch, getRef());
+            priceActor.tell(new Price("A", 1), getRef());
+            priceActor.tell(new Price("A", 2), getRef());
+            priceActor.tell(new Price("A", 3), getRef());
+            latch.countDown();
+
+            expectMsgEquals(new Price("A", 3));
+            expectNoMsg();
+        }};
+    }
+
+    private void enqueue(final Object message) {
+        queue.enqueue(ActorRef.noSender(), new Envelope(message, ActorRef.noSender()));
+    }
+
+    private Object dequeue() {
+        return queue.dequeue().message();
+    }
+
+    public static final class Price implements Conflatable {
+        private final String instrument;
+        private final int price;
+
+        public Price(final String instrument, final int price) {
+            this.instrument = instrument;
+            this.price = price;
+        }
+
+        @Override
+        public Object conflationKey() {
+            return instrument;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Price && ((Price) o).instrument.equals(instrument) && ((Price) o).price == price;
+        }
+
+        @Override
+        public int hashCode() {
+            return instrument.hashCode() * 31 + price;
+        }
+
+        @Override
+        public String toString() {
+            return instrument + "=" + price;
+        }
+    }
+
+    public static final class HitCount implements Mergeable<HitCount> {
+        private final String page;
+        private final long hits;
+
+        public HitCount(final String page, final long hits) {
+            this.page = page;
+            this.hits = hits;
+        }
+
+        @Override
+        public Object conflationKey() {
+            return page;
+        }
+
+        @Override
+        public HitCount mergeWith(final HitCount later) {
+            if (later.hits < 0) {
+                throw new IllegalArgumentException("Negative hits");
+            }
+            return later.hits == 0 ? null : new HitCount(page, hits + later.hits);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof HitCount && ((HitCount) o).page.equals(page) && ((HitCount) o).hits == hits;
+        }
+
+        @Override
+        public int hashCode() {
+            return page.hashCode() * 31 + (int) hits;
+        }
+
+        @Override
+        public String toString() {
+            return page + "=" + hits;
+        }
+    }
+
+    public static class PriceActor extends MessageDelegatingActor implements Messages2<Price, CountDownLatch> {
+        private final ActorRef probe;
+
+        public PriceActor(final ActorRef probe) {
+            this.probe = probe;
+        }
+
+        @Override
+        public void onMessage(final CountDownLatch latch) {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onMessage2(final Price price) {
+            probe.tell(price, getSelf());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Status;
+import akka.testkit.JavaTestKit;
+import akka.util.Timeout;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class ContractClientsTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldTellMessages() throws Exception {
+        new JavaTestKit(system) {{
+            final Contract client = ContractClients.clientFor(Contract.class, getRef());
+            client.onRequest("a string");
+            expectMsgEquals("a string");
+        }};
+    }
+
+    @Test
+    public void shouldTellEachMessageOfBatch() throws Exception {
+        new JavaTestKit(system) {{
+            final Contract client = ContractClients.clientFor(Contract.class, getRef());
+            client.onRequests(asList(1, 2));
+            expectMsgEquals(1);
+            expectMsgEquals(2);
+        }};
+    }
+
+    @Test
+    public void shouldCompleteStageWithReply() throws Exception {
+        new JavaTestKit(system) {{
+            final Contract client = ContractClients.clientFor(Contract.class, getRef());
+            final CompletionStage<String> reply = client.onRequest(1L);
+            expectMsgEquals(1L);
+            getLastSender().tell("reply", getRef());
+            assertEquals("reply", reply.toCompletableFuture().get(3, TimeUnit.SECONDS));
+        }};
+    }
+
+    @Test
+    public void shouldFailStageWithFailureReply() throws Exception {
+        new JavaTestKit(system) {{
+            final Contract client = ContractClients.clientFor(Contract.class, getRef(), getRef(), new Timeout(3, TimeUnit.SECONDS));
+            final CompletionStage<String> reply = client.onRequest(1L);
+            expectMsgEquals(1L);
+            final IllegalStateException failure = new IllegalStateException("boom");
+            getLastSender().tell(new Status.Failure(failure), getRef());
+            try {
+                reply.toCompletableFuture().get(3, TimeUnit.SECONDS);
+                fail("Expected failure");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }};
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfNoClientIsGenerated() throws Exception {
+        new JavaTestKit(system) {{
+            ContractClients.clientFor(MethodDelegateTest.EventHandlers.class, getRef());
+        }};
+    }
+
+    public interface Contract extends Requests {
+        void onRequest(String request);
+
+        CompletionStage<String> onRequest(Long request);
+
+        @Batch
+        void onRequests(List<Integer> requests);
+    }
+
+    /**
+     * Written the way the annotation processor generates clients.
+     */
+    public static final class Contract_Client extends ContractClient implements Contract {
+
+        public Contract_Client(final ActorRef target, final ActorRef sender, final Timeout askTimeout) {
+            super(target, sender, askTimeout);
+        }
+
+        @Override
+        public void onRequest(final String message) {
+            tell(message);
+        }
+
+        @Override
+        public CompletionStage<String> onRequest(final Long message) {
+            return ask(message);
+        }
+
+        @Override
+        public void onRequests(final List<Integer> message) {
+            tellEach(message);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.testkit.JavaTestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import se.sawano.akka.japi.messagehandling.predef.Messages2;
+import se.sawano.akka.japi.messagehandling.predef.Requests1;
+import se.sawano.akka.japi.messagehandling.predef.Responses1;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ContractPriorityMailboxTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create("priority", ConfigFactory.parseString(
+                "priority-mailbox.mailbox-type = \"" + ContractPriorityMailbox.class.getName() + "\"\n" +
+                "priority-mailbox.actor-class = \"" + PriorityActor.class.getName() + "\"\n" +
+                "reversed-mailbox.mailbox-type = \"" + ContractPriorityMailbox.class.getName() + "\"\n" +
+                "reversed-mailbox.actor-class = \"" + PriorityActor.class.getName() + "\"\n" +
+                "reversed-mailbox.category-order = [MESSAGE, REQUEST, RESPONSE]"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldReceiveResponsesBeforeRequestsBeforeMessages() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef priorityActor = getSystem().actorOf(Props.create(PriorityActor.class, getRef()).withMailbox("priority-mailbox"));
+
+            sendWhileBlocked(priorityActor, this);
+
+            expectMsgEquals(1L);
+            expectMsgEquals(2L);
+            expectMsgEquals(1);
+            expectMsgEquals(2);
+            expectMsgEquals("first");
+            expectMsgEquals("second");
+            expectNoMsg();
+        }};
+    }
+
+    @Test
+    public void shouldReceiveCategoriesInConfiguredOrder() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef priorityActor = getSystem().actorOf(Props.create(PriorityActor.class, getRef()).withMailbox("reversed-mailbox"));
+
+            sendWhileBlocked(priorityActor, this);
+
+            expectMsgEquals("first");
+            expectMsgEquals("second");
+            expectMsgEquals(1);
+            expectMsgEquals(2);
+            expectMsgEquals(1L);
+            expectMsgEquals(2L);
+            expectNoMsg();
+        }};
+    }
+
+    @Test
+    public void shouldReceiveControlMessagesFirst() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef priorityActor = getSystem().actorOf(Props.create(PriorityActor.class, getRef()).withMailbox("priority-mailbox"));
+            watch(priorityActor);
+
+            final CountDownLatch latch = new CountDownLatch(1);
+            priorityActor.tell(latch, getRef());
+            expectMsgEquals("blocked");
+            priorityActor.tell(1L, getRef());
+            priorityActor.tell(PoisonPill.getInstance(), getRef());
+            latch.countDown();
+
+            expectMsgClass(Terminated.class);
+            expectNoMsg();
+        }};
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAcceptIncompleteCategoryOrder() {
+        new ContractPriorityMailbox(null, ConfigFactory.parseString("category-order = [RESPONSE, REQUEST]"));
+    }
+
+    private void sendWhileBlocked(final ActorRef priorityActor, final JavaTestKit probe) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        priorityActor.tell(latch, probe.getRef());
+        probe.expectMsgEquals("blocked");
+        priorityActor.tell("first", probe.getRef());
+        priorityActor.tell(1, probe.getRef());
+        priorityActor.tell(1L, probe.getRef());
+        priorityActor.tell("second", probe.getRef());
+        priorityActor.tell(2, probe.getRef());
+        priorityActor.tell(2L, probe.getRef());
+        latch.countDown();
+    }
+
+    public static class PriorityActor extends MessageDelegatingActor implements Requests1<Integer>, Responses1<Long>,
+                                                                                 Messages2<String, CountDownLatch> {
+        private final ActorRef probe;
+
+        public PriorityActor(final ActorRef probe) {
+            this.probe = probe;
+        }
+
+        @Override
+        public void onRequest(final Integer request) {
+            probe.tell(request, getSelf());
+        }
+
+        @Override
+        public void onResponse(final Long response) {
+            probe.tell(response, getSelf());
+        }
+
+        @Override
+        public void onMessage(final CountDownLatch latch) {
+            probe.tell("blocked", getSelf());
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onMessage2(final String message) {
+            probe.tell(message, getSelf());
+        }
+    }
+}
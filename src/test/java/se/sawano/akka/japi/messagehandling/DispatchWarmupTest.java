@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorSystem;
+import akka.testkit.JavaTestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Test;
+import se.sawano.akka.japi.messagehandling.examples.bossandworker.Boss;
+import se.sawano.akka.japi.messagehandling.examples.bossandworker.Worker;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DispatchWarmupTest {
+
+    ActorSystem system;
+
+    @After
+    public void tearDown() throws Exception {
+        if (system != null) {
+            JavaTestKit.shutdownActorSystem(system);
+        }
+    }
+
+    @Test
+    public void shouldMapConfiguredTargetsWhenActorSystemStarts() throws Exception {
+        system = systemWithTargets("\"" + MethodDelegateTest.ExampleClass.class.getName() + "\", \"" + Boss.class.getPackage().getName() +
+                                   ".*\"");
+
+        final Map<Class<?>, Long> registrationNanos = DispatchWarmup.get(system).registrationNanos();
+
+        assertEquals(3, registrationNanos.size());
+        assertTrue(registrationNanos.containsKey(MethodDelegateTest.ExampleClass.class));
+        assertTrue(registrationNanos.containsKey(Boss.class));
+        assertTrue(registrationNanos.containsKey(Worker.class));
+    }
+
+    @Test
+    public void shouldReportRegistrationTimesInOrderOfTargets() throws Exception {
+        system = systemWithTargets("");
+
+        final Map<Class<?>, Long> registrationNanos = DispatchWarmup.get(system).warmUp(Arrays.asList(Worker.class.getName(),
+                                                                                                      Boss.class.getName()));
+
+        assertEquals(Arrays.<Class<?>>asList(Worker.class, Boss.class), Arrays.asList(registrationNanos.keySet().toArray()));
+        for (final Long nanos : registrationNanos.values()) {
+            assertTrue(nanos > 0);
+        }
+    }
+
+    @Test
+    public void shouldFailToStartIfTargetCannotBeMapped() throws Exception {
+        try {
+            system = systemWithTargets("\"" + MethodDelegateTest.ClashingClass.class.getName() + "\"");
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains(MethodDelegateTest.ClashingClass.class.getName()));
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void shouldFindTargetsOnceIfPackageIsInSeveralClassPathEntries() throws Exception {
+        final ClassLoader parent = getClass().getClassLoader();
+        final ClassLoader classLoader = new ClassLoader(parent) {
+            @Override
+            public Enumeration<URL> getResources(final String name) throws IOException {
+                final List<URL> resources = Collections.list(parent.getResources(name));
+                resources.addAll(Collections.list(parent.getResources(name)));
+                return Collections.enumeration(resources);
+            }
+        };
+
+        final List<Class<?>> targets = new TargetScanner(classLoader).targetsIn(Boss.class.getPackage().getName());
+
+        assertEquals(Arrays.<Class<?>>asList(Boss.class, Worker.class), targets);
+    }
+
+    @Test
+    public void shouldOnlyMapTargetsIfNoLookupsAreConfigured() throws Exception {
+        system = ActorSystem.create("DispatchWarmupTest", ConfigFactory.parseString(
+                DispatchWarmup.CONFIG_PATH + ".lookups-per-type = 0").withFallback(ConfigFactory.load()));
+
+        assertEquals(1, DispatchWarmup.get(system).warmUp(Collections.singletonList(Worker.class.getName())).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAcceptClassThatIsNotTarget() throws Exception {
+        system = systemWithTargets("");
+
+        DispatchWarmup.get(system).warmUp(Collections.singletonList(String.class.getName()));
+    }
+
+    private static ActorSystem systemWithTargets(final String targets) {
+        return ActorSystem.create("DispatchWarmupTest", ConfigFactory.parseString(
+                "akka.extensions = [\"" + DispatchWarmup.Provider.class.getName() + "\"]\n" + DispatchWarmup.CONFIG_PATH + ".targets = [" +
+                targets + "]").withFallback(ConfigFactory.load()));
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class EntityRuntimeTest {
+
+    EntityRuntime runtime;
+
+    @Before
+    public void setUp() throws Exception {
+        runtime = EntityRuntime.create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        runtime.close();
+    }
+
+    @Test
+    public void shouldHandleMessagesInOrder() throws Exception {
+        final Account account = new Account();
+        final EntityRef entity = runtime.spawn(account);
+        for (int i = 1; i <= 1000; ++i) {
+            entity.tell(i);
+        }
+
+        assertEquals(500500L, entity.ask("balance").get(3, TimeUnit.SECONDS));
+        assertEquals(1000, account.deposits.size());
+        assertEquals(Integer.valueOf(1), account.deposits.get(0));
+        assertEquals(Integer.valueOf(1000), account.deposits.get(999));
+    }
+
+    @Test
+    public void shouldReplyWithResultOfStage() throws Exception {
+        final EntityRef entity = runtime.spawn(new Account());
+
+        assertEquals("async 1", entity.ask(1L).get(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldFailAskIfMethodFails() throws Exception {
+        final EntityRef entity = runtime.spawn(new Account());
+        try {
+            entity.ask(-1).get(3, TimeUnit.SECONDS);
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertEquals("negative", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void shouldFailAskIfMessageIsNotHandled() throws Exception {
+        final EntityRef entity = runtime.spawn(new Account());
+        try {
+            entity.ask(1.0d).get(3, TimeUnit.SECONDS);
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void shouldNotHoldUpOtherEntitiesWhileBlocking() throws Exception {
+        final EntityRef blocked = runtime.spawn(new Account());
+        final EntityRef other = runtime.spawn(new Account());
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CompletableFuture<Object> released = blocked.ask(latch);
+
+        other.tell(1);
+        assertEquals(1L, other.ask("balance").get(3, TimeUnit.SECONDS));
+        assertFalse(released.isDone());
+        latch.countDown();
+        assertEquals("released", released.get(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldNotHandleMessageThatWasRejected() throws Exception {
+        final Account account = new Account();
+        final AtomicBoolean rejected = new AtomicBoolean();
+        final EntityRef entity = new EntityRef(new MethodDelegate(account), new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                if (rejected.compareAndSet(false, true)) {
+                    throw new RejectedExecutionException();
+                }
+                command.run();
+            }
+        });
+        try {
+            entity.tell(1);
+            fail("Expected rejection");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        entity.tell(2);
+
+        assertEquals(2L, entity.ask("balance").get(3, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(2), account.deposits);
+    }
+
+    @Test
+    public void shouldCompleteAskIfMethodThrowsError() throws Exception {
+        final EntityRef entity = new EntityRef(new MethodDelegate(new Account(), InvocationMode.METHOD_HANDLE, 0, FailureMode.RETHROW),
+                                               CALLING_THREAD);
+        try {
+            entity.ask(Boolean.TRUE).get(3, TimeUnit.SECONDS);
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+    }
+
+    @Test
+    public void shouldReportFailureOfStageOfToldMessage() throws Exception {
+        final EntityRef entity = new EntityRef(new MethodDelegate(new Account(), InvocationMode.METHOD_HANDLE, 0, FailureMode.RETHROW),
+                                               CALLING_THREAD);
+        final List<Throwable> failures = new ArrayList<>();
+        final Thread thread = Thread.currentThread();
+        final Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread t, final Throwable e) {
+                failures.add(e);
+            }
+        });
+        try {
+            entity.tell(-1L);
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(1, failures.size());
+        assertEquals("negative request", failures.get(0).getMessage());
+    }
+
+    @Test
+    public void shouldRejectMessageSentAfterCloseWhileHandlingMessage() throws Exception {
+        final Account account = new Account();
+        final EntityRef entity = runtime.spawn(account);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CompletableFuture<Object> released = entity.ask(latch);
+        runtime.close();
+        try {
+            entity.tell(1);
+            fail("Expected rejection");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        latch.countDown();
+        assertEquals("released", released.get(3, TimeUnit.SECONDS));
+        assertTrue(account.deposits.isEmpty());
+    }
+
+    @Test
+    public void shouldRejectQueuedMessagesWhenEntityCannotBeRescheduled() throws Exception {
+        final List<Runnable> drains = new ArrayList<>();
+        final EntityRef entity = new EntityRef(new MethodDelegate(new Account()), new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                if (!drains.isEmpty()) {
+                    throw new RejectedExecutionException();
+                }
+                drains.add(command);
+            }
+        });
+        for (int i = 0; i < 100; ++i) {
+            entity.tell(1);
+        }
+        final CompletableFuture<Object> balance = entity.ask("balance");
+
+        drains.get(0).run();
+
+        try {
+            balance.get(3, TimeUnit.SECONDS);
+            fail("Expected rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    private static final Executor CALLING_THREAD = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    public interface AccountContract extends Requests {
+        void onRequest(Integer deposit);
+
+        Long onRequest(String query);
+
+        String onRequest(CountDownLatch latch);
+
+        CompletionStage<String> onRequest(Long request);
+
+        String onRequest(Boolean fail);
+    }
+
+    public static class Account implements AccountContract {
+        private final List<Integer> deposits = new ArrayList<>();
+        private long balance;
+
+        @Override
+        public void onRequest(final Integer deposit) {
+            if (deposit < 0) {
+                throw new IllegalArgumentException("negative");
+            }
+            deposits.add(deposit);
+            balance += deposit;
+        }
+
+        @Override
+        public Long onRequest(final String query) {
+            return balance;
+        }
+
+        @Override
+        public String onRequest(final CountDownLatch latch) {
+            try {
+                return latch.await(3, TimeUnit.SECONDS) ? "released" : "timed out";
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public CompletionStage<String> onRequest(final Long request) {
+            final CompletableFuture<String> reply = new CompletableFuture<>();
+            if (request < 0) {
+                reply.completeExceptionally(new IllegalArgumentException("negative request"));
+            }
+            else {
+                reply.complete("async " + request);
+            }
+            return reply;
+        }
+
+        @Override
+        public String onRequest(final Boolean fail) {
+            throw new AssertionError("failing with an error");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import se.sawano.akka.japi.messagehandling.examples.bossandworker.Boss;
+import se.sawano.akka.japi.messagehandling.predef.Messages1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HandlerManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldMapListedClassesLikeScanning() throws Exception {
+        final List<Class<?>> targets = Arrays.<Class<?>>asList(MethodDelegateTest.ExampleClass.class,
+                                                               MethodDelegateTest.BatchExampleClass.class,
+                                                               BlockingActorTest.BlockingActor.class,
+                                                               AsyncRequestActorTest.AsyncActor.class,
+                                                               Boss.class);
+
+        final Map<String, HandlerManifest.Entry> entries = read(write(namesOf(targets)));
+
+        assertEquals(targets.size(), entries.size());
+        for (final Class<?> target : targets) {
+            assertSameHandlers(new ArrayList<>(MethodRepository.scanned(target).handlers().values()),
+                               HandlerManifest.handlersOf(target, entries.get(target.getName())));
+        }
+    }
+
+    @Test
+    public void shouldOnlyListTargets() throws Exception {
+        final List<String> classNames = Arrays.asList(Boss.class.getName(), String.class.getName(), "no.such.Class",
+                                                      MethodDelegateTest.BaseEvent.class.getName());
+
+        final Map<String, HandlerManifest.Entry> entries = read(write(classNames));
+
+        assertEquals(Collections.singleton(Boss.class.getName()), entries.keySet());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToWriteClassThatCannotBeMapped() throws Exception {
+        write(Collections.singletonList(MethodDelegateTest.ClashingClass.class.getName()));
+    }
+
+    @Test
+    public void shouldNotUseEntryOfClassWithOtherInterfaces() throws Exception {
+        final Map<String, HandlerManifest.Entry> entries = read(write(Collections.singletonList(Boss.class.getName())));
+
+        assertNull(HandlerManifest.handlersOf(MethodRepositoryTest.SomeTarget.class, entries.get(Boss.class.getName())));
+    }
+
+    @Test
+    public void shouldNotUseEntryOfClassWhoseTypeArgumentsChanged() throws Exception {
+        final Map<String, HandlerManifest.Entry> entries = read(write(Collections.singletonList(StringTarget.class.getName())));
+
+        assertNull(HandlerManifest.handlersOf(IntegerTarget.class, entries.get(StringTarget.class.getName())));
+    }
+
+    @Test
+    public void shouldNotUseEntryOfClassWhoseBatchElementTypeChanged() throws Exception {
+        final Map<String, HandlerManifest.Entry> entries = read(write(Collections.singletonList(LongBatchTarget.class.getName())));
+
+        assertNull(HandlerManifest.handlersOf(IntegerBatchTarget.class, entries.get(LongBatchTarget.class.getName())));
+    }
+
+    @Test
+    public void shouldIgnoreManifestOfUnknownFormat() throws Exception {
+        assertTrue(read(new byte[]{0, 0, 0, 0, 0, 0}).isEmpty());
+    }
+
+    @Test
+    public void shouldReadManifestsOnClassPathOfClassLoader() throws Exception {
+        final File manifest = new File(folder.getRoot(), HandlerManifest.RESOURCE_NAME);
+        assertTrue(manifest.getParentFile().mkdirs());
+        try (OutputStream out = new FileOutputStream(manifest)) {
+            HandlerManifest.write(Collections.singletonList(Boss.class.getName()), getClass().getClassLoader(), out);
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{folder.getRoot().toURI().toURL()}, getClass().getClassLoader())) {
+            assertTrue(HandlerManifest.entriesOf(classLoader).containsKey(Boss.class.getName()));
+        }
+    }
+
+    public static class StringTarget implements Messages1<String> {
+        @Override
+        public void onMessage(final String message) {
+        }
+    }
+
+    /**
+     * {@link StringTarget} after its type argument was changed.
+     */
+    public static class IntegerTarget implements Messages1<Integer> {
+        @Override
+        public void onMessage(final Integer message) {
+        }
+    }
+
+    public interface Samples<T> extends Messages {
+        @Batch
+        void onSamples(List<T> samples);
+    }
+
+    public static class LongBatchTarget implements Samples<Long> {
+        @Override
+        public void onSamples(final List<Long> samples) {
+        }
+    }
+
+    /**
+     * {@link LongBatchTarget} after its type argument was changed.
+     */
+    public static class IntegerBatchTarget implements Samples<Integer> {
+        @Override
+        public void onSamples(final List<Integer> samples) {
+        }
+    }
+
+    private static List<String> namesOf(final List<Class<?>> classes) {
+        final List<String> names = new ArrayList<>();
+        for (final Class<?> type : classes) {
+            names.add(type.getName());
+        }
+        return names;
+    }
+
+    private byte[] write(final List<String> classNames) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HandlerManifest.write(classNames, getClass().getClassLoader(), out);
+        return out.toByteArray();
+    }
+
+    private static Map<String, HandlerManifest.Entry> read(final byte[] manifest) throws IOException {
+        return HandlerManifest.read(new ByteArrayInputStream(manifest));
+    }
+
+    private static void assertSameHandlers(final List<HandlerMethod> expected, final List<HandlerMethod> actual) {
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).method(), actual.get(i).method());
+            assertEquals(expected.get(i).messageType(), actual.get(i).messageType());
+            assertEquals(expected.get(i).category(), actual.get(i).category());
+            assertEquals(expected.get(i).maxBatchSize(), actual.get(i).maxBatchSize());
+            assertEquals(expected.get(i).isSequential(), actual.get(i).isSequential());
+        }
+    }
+}
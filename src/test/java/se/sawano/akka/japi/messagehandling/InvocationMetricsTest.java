@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import org.junit.Test;
+import se.sawano.akka.japi.messagehandling.predef.Messages1;
+import se.sawano.akka.japi.messagehandling.predef.Messages2;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class InvocationMetricsTest {
+
+    @Test
+    public void shouldCountInvocationsAndFailuresPerMethod() {
+        final MethodDelegate delegate = new MethodDelegate(new MeasuredTarget(), InvocationMode.GENERATED, 1);
+
+        delegate.onReceive("ok");
+        delegate.onReceive("ok");
+        delegate.onReceive(1L);
+        receiveFailing(delegate);
+
+        assertEquals(2, InvocationMetrics.snapshot(MeasuredTarget.class).size());
+        assertMetrics("onMessage(java.lang.String)", 3, 1, 3);
+        assertMetrics("onMessage2(java.lang.Long)", 1, 0, 1);
+    }
+
+    @Test
+    public void shouldOnlyMeasureSampledInvocations() {
+        final MethodDelegate delegate = new MethodDelegate(new SampledTarget(), InvocationMode.METHOD_HANDLE, 3);
+
+        for (int i = 0; i < 7; ++i) {
+            delegate.onReceive("message");
+        }
+
+        final HandlerMetricsSnapshot snapshot = InvocationMetrics.snapshot(SampledTarget.class).get(0);
+        assertEquals(7, snapshot.invocations());
+        assertEquals(3, snapshot.sampledInvocations());
+        assertTrue(snapshot.latencyNanos(0.5) <= snapshot.maxLatencyNanos());
+    }
+
+    @Test
+    public void shouldNotRecordMetricsByDefault() {
+        new MethodDelegate(new UnmeasuredTarget()).onReceive("message");
+
+        assertTrue(InvocationMetrics.snapshot(UnmeasuredTarget.class).isEmpty());
+    }
+
+    @Test
+    public void shouldRegisterMBeanPerMethod() throws Exception {
+        new MethodDelegate(new ManagedTarget(), InvocationMode.METHOD_HANDLE, 1).onReceive("message");
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(InvocationMetrics.JMX_DOMAIN + ":type=HandlerMetrics,target=" + ObjectName.quote(
+                ManagedTarget.class.getName()) + ",handler=" + ObjectName.quote("onMessage(java.lang.String)"));
+        assertEquals(1L, server.getAttribute(name, "Invocations"));
+        assertEquals(0L, server.getAttribute(name, "Failures"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAcceptNegativeSampleRate() {
+        new MethodDelegate(new MeasuredTarget(), InvocationMode.GENERATED, -1);
+    }
+
+    @Test
+    public void shouldReportLatenciesWithBoundedError() {
+        for (long value = 0; value < 100_000; value = value * 3 / 2 + 1) {
+            final long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    private void receiveFailing(final MethodDelegate delegate) {
+        try {
+            delegate.onReceive("fail");
+            fail("Expected exception");
+        } catch (DelegateException e) {
+            // expected
+        }
+    }
+
+    private void assertMetrics(final String handler, final long invocations, final long failures, final long sampledInvocations) {
+        final HandlerMetricsSnapshot snapshot = snapshotOf(handler);
+        assertEquals(MeasuredTarget.class.getName(), snapshot.targetClassName());
+        assertEquals(invocations, snapshot.invocations());
+        assertEquals(failures, snapshot.failures());
+        assertEquals(sampledInvocations, snapshot.sampledInvocations());
+    }
+
+    private HandlerMetricsSnapshot snapshotOf(final String handler) {
+        for (final HandlerMetricsSnapshot snapshot : InvocationMetrics.snapshot(MeasuredTarget.class)) {
+            if (snapshot.handler().equals(handler)) {
+                return snapshot;
+            }
+        }
+        throw new AssertionError("No metrics for: " + handler);
+    }
+
+    public static final class MeasuredTarget implements Messages2<Long, String> {
+        @Override
+        public void onMessage(String message) {
+            if ("fail".equals(message)) {
+                throw new IllegalStateException(message);
+            }
+        }
+
+        @Override
+        public void onMessage2(Long message) {
+        }
+    }
+
+    public static final class SampledTarget implements Messages1<String> {
+        @Override
+        public void onMessage(String message) {
+        }
+    }
+
+    public static final class UnmeasuredTarget implements Messages1<String> {
+        @Override
+        public void onMessage(String message) {
+        }
+    }
+
+    public static final class ManagedTarget implements Messages1<String> {
+        @Override
+        public void onMessage(String message) {
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.actor.UnhandledMessage;
+import akka.japi.pf.FI;
+import akka.japi.pf.ReceiveBuilder;
+import akka.testkit.JavaTestKit;
+import akka.testkit.TestActorRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.PartialFunction;
+import scala.runtime.BoxedUnit;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageDelegatingAbstractActorTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldDelegateMessagesToContractMethods() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef actor = getSystem().actorOf(Props.create(ContractActor.class));
+            actor.tell("hello", getRef());
+            expectMsgEquals("HELLO");
+        }};
+    }
+
+    @Test
+    public void shouldReplyWithReturnValueOfRequestMethod() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef actor = getSystem().actorOf(Props.create(ContractActor.class));
+            actor.tell(-1, getRef());
+            actor.tell(20, getRef());
+            expectMsgEquals(21L);
+        }};
+    }
+
+    @Test
+    public void shouldShareContractWithMessageDelegatingActor() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef abstractActor = getSystem().actorOf(Props.create(ContractActor.class));
+            final ActorRef untypedActor = getSystem().actorOf(Props.create(UntypedContractActor.class));
+            abstractActor.tell(1, getRef());
+            expectMsgEquals(2L);
+            untypedActor.tell(1, getRef());
+            expectMsgEquals(2L);
+        }};
+    }
+
+    @Test
+    public void shouldPassUnhandledMessagesToUnhandled() throws Exception {
+        new JavaTestKit(system) {{
+            getSystem().eventStream().subscribe(getRef(), UnhandledMessage.class);
+            final ActorRef actor = getSystem().actorOf(Props.create(ContractActor.class));
+            actor.tell(1.5d, getRef());
+            assertEquals(1.5d, expectMsgClass(UnhandledMessage.class).message());
+        }};
+    }
+
+    @Test
+    public void shouldCombineContractWithOwnBehavior() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef actor = getSystem().actorOf(Props.create(CombiningActor.class));
+            actor.tell(1.5d, getRef());
+            expectMsgEquals("other: 1.5");
+            actor.tell("hello", getRef());
+            expectMsgEquals("HELLO");
+        }};
+    }
+
+    @Test
+    public void shouldBeDefinedForHandledMessagesOnly() {
+        final TestActorRef<ContractActor> actor = TestActorRef.create(system, Props.create(ContractActor.class));
+        final PartialFunction<Object, BoxedUnit> receive = actor.underlyingActor().receive();
+
+        assertTrue(receive.isDefinedAt("hello"));
+        assertTrue(receive.isDefinedAt(1));
+        assertFalse(receive.isDefinedAt(1.5d));
+    }
+
+    @Test
+    public void shouldNotCreateActorWithBatchMethod() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef actor = getSystem().actorOf(Props.create(BatchActor.class));
+            watch(actor);
+            assertEquals(actor, expectMsgClass(Terminated.class).actor());
+        }};
+    }
+
+    public interface Contract extends Requests {
+        Long onRequest(Integer request);
+    }
+
+    public interface Notifications extends Messages {
+        void onMessage(String message);
+    }
+
+    public interface Samples extends Messages {
+        @Batch(maxSize = 4)
+        void onSamples(List<Integer> samples);
+    }
+
+    public static class ContractActor extends MessageDelegatingAbstractActor implements Contract, Notifications {
+        @Override
+        public Long onRequest(final Integer request) {
+            return request < 0 ? null : request + 1L;
+        }
+
+        @Override
+        public void onMessage(final String message) {
+            sender().tell(message.toUpperCase(), self());
+        }
+    }
+
+    public static class UntypedContractActor extends MessageDelegatingActor implements Contract {
+        @Override
+        public Long onRequest(final Integer request) {
+            return request + 1L;
+        }
+    }
+
+    public static class CombiningActor extends MessageDelegatingAbstractActor implements Notifications {
+        @Override
+        public void onMessage(final String message) {
+            sender().tell(message.toUpperCase(), self());
+        }
+
+        @Override
+        public PartialFunction<Object, BoxedUnit> receive() {
+            return contractReceive().orElse(ReceiveBuilder.matchAny(new FI.UnitApply<Object>() {
+                @Override
+                public void apply(final Object message) {
+                    sender().tell("other: " + message, self());
+                }
+            }).build());
+        }
+    }
+
+    public static class BatchActor extends MessageDelegatingAbstractActor implements Samples {
+        @Override
+        public void onSamples(final List<Integer> samples) {
+        }
+    }
+}
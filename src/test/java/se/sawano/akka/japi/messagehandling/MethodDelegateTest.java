@@ -16,13 +16,22 @@
 
 package se.sawano.akka.japi.messagehandling;
 
+import com.sun.management.ThreadMXBean;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.sawano.akka.japi.messagehandling.predef.*;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -80,6 +89,113 @@ public class MethodDelegateTest {
         thenNothingShouldBeInvokedWhenReceiving(String.valueOf(1));
     }
 
+    @Test
+    public void shouldCountUnhandledMessagesPerType() {
+        final MethodDelegate delegate = new MethodDelegate(new CountingExampleClass());
+        final MethodDelegate otherDelegate = new MethodDelegate(new CountingExampleClass());
+
+        delegate.onReceive(String.valueOf(1));
+        otherDelegate.onReceive(String.valueOf(2));
+        delegate.onReceive(Integer.valueOf(1));
+        delegate.onReceive(Long.valueOf(1));
+
+        assertEquals(2, delegate.unhandledCount(String.class));
+        assertEquals(1, delegate.unhandledCount(Integer.class));
+        assertEquals(0, delegate.unhandledCount(Long.class));
+        assertEquals(2, delegate.unhandledCounts().size());
+    }
+
+    @Test
+    public void shouldTellFirstUnhandledMessageOfEachTypeOncePerTargetClass() {
+        final MethodDelegate delegate = new MethodDelegate(new CountingExampleClass());
+        final MethodDelegate otherDelegate = new MethodDelegate(new CountingExampleClass());
+
+        delegate.onReceive(Character.valueOf('a'));
+        otherDelegate.onReceive(Character.valueOf('b'));
+        delegate.onReceive(Long.valueOf(1));
+
+        assertTrue(otherDelegate.isFirstUnhandled(Character.class));
+        assertFalse(delegate.isFirstUnhandled(Character.class));
+        assertFalse(otherDelegate.isFirstUnhandled(Character.class));
+        assertFalse(delegate.isFirstUnhandled(Long.class));
+        assertFalse(delegate.isFirstUnhandled(Float.class));
+    }
+
+    @Test
+    public void shouldTellFirstUnhandledMessageToOneOfConcurrentDelegates() throws Exception {
+        final MethodDelegate delegate = new MethodDelegate(new CountingExampleClass());
+        delegate.onReceive(Float.valueOf(1));
+        final AtomicInteger firsts = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            final MethodDelegate threadDelegate = new MethodDelegate(new CountingExampleClass());
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (threadDelegate.isFirstUnhandled(Float.class)) {
+                        firsts.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, firsts.get());
+    }
+
+    @Test
+    public void shouldRememberLastTwoHandledMessageClasses() {
+        givenDelegate(InvocationMode.METHOD_HANDLE);
+
+        whenReceiving(Long.valueOf(1));
+        whenReceiving(Long.valueOf(2));
+        whenReceiving(Integer.valueOf(1));
+        whenReceiving(Long.valueOf(3));
+        whenReceiving(Integer.valueOf(2));
+        whenReceiving(Double.valueOf(1));
+        whenReceiving(Long.valueOf(4));
+        thenNothingMoreShouldBeInvokedWhenReceiving(String.valueOf(1));
+        thenNothingMoreShouldBeInvokedWhenReceiving(String.valueOf(2));
+
+        assertEquals(3, delegate.inlineCacheHits());
+        assertEquals(6, delegate.inlineCacheMisses());
+        assertEquals(7, invokedMethods.size());
+    }
+
+    @Test
+    public void shouldNotAllocateOnInlineCacheMisses() {
+        final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        givenDelegate(InvocationMode.METHOD_HANDLE);
+        final Object[] messages = {Long.valueOf(1), Integer.valueOf(1), Double.valueOf(1)};
+        lookUp(messages, 30_000);
+
+        final long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        lookUp(messages, 30_000);
+        final long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(0, delegate.inlineCacheHits());
+        assertTrue("Allocated " + allocated + " bytes", allocated < 30_000);
+    }
+
+    private void lookUp(final Object[] messages, final int count) {
+        for (int i = 0; i < count; ++i) {
+            assertNotNull(delegate.methodFor(messages[i % messages.length]));
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowExceptionOnNullMessage() {
         givenDelegate();
@@ -122,6 +238,220 @@ public class MethodDelegateTest {
         thenTheOnlyMethodsInvokedAre("someMethodInteger", "someMethodLong");
     }
 
+    @Test
+    public void shouldInvokeMethodsUsingReflection() {
+        givenDelegate(InvocationMode.REFLECTION);
+
+        whenReceiving(Long.valueOf(1));
+        whenReceiving(Short.valueOf((short) 1));
+        whenReceiving(Double.valueOf(1));
+
+        thenTheOnlyMethodsInvokedAre("onRequest", "onResponse", "onMessage2");
+    }
+
+    @Test
+    public void shouldInvokeMethodsUsingCompiledDispatcher() {
+        givenDelegate(InvocationMode.COMPILED);
+
+        whenReceiving(Long.valueOf(1));
+        whenReceiving(Integer.valueOf(1));
+        whenReceiving(Short.valueOf((short) 1));
+        whenReceiving(new Byte("1"));
+        whenReceiving(Double.valueOf(1));
+
+        thenTheOnlyMethodsInvokedAre("onRequest", "onRequest2", "onResponse", "onMessage", "onMessage2");
+        thenNothingMoreShouldBeInvokedWhenReceiving(String.valueOf(1));
+    }
+
+    @Test
+    public void shouldUseGeneratedDispatcherIfAvailable() {
+        final PrecompiledTarget target = new PrecompiledTarget();
+        givenDelegateFor(target, InvocationMode.GENERATED);
+
+        whenReceiving("a message");
+
+        assertTrue(delegate.usesGeneratedDispatcher());
+        assertEquals(1, target.dispatchedByGeneratedDispatcher);
+        assertEquals(1, target.receivedMessages.size());
+    }
+
+    @Test
+    public void shouldNotUseGeneratedDispatcherInOtherModes() {
+        final PrecompiledTarget target = new PrecompiledTarget();
+        givenDelegateFor(target, InvocationMode.METHOD_HANDLE);
+
+        whenReceiving("a message");
+
+        assertFalse(delegate.usesGeneratedDispatcher());
+        assertEquals(0, target.dispatchedByGeneratedDispatcher);
+        assertEquals(1, target.receivedMessages.size());
+    }
+
+    @Test
+    public void shouldNamePropertyOfInvalidInvocationMode() {
+        try {
+            InvocationMode.named("FASTEST");
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(InvocationMode.PROPERTY_NAME));
+            assertTrue(e.getMessage().contains("FASTEST"));
+        }
+    }
+
+    @Test
+    public void shouldFallBackToMethodHandlesWithoutGeneratedDispatcher() {
+        givenDelegate(InvocationMode.GENERATED);
+
+        whenReceiving(Long.valueOf(1));
+
+        assertFalse(delegate.usesGeneratedDispatcher());
+        thenTheOnlyMethodsInvokedAre("onRequest");
+    }
+
+    @Test
+    public void shouldInvokeMethodOfMostSpecificSupertype() {
+        for (final InvocationMode mode : InvocationMode.values()) {
+            invokedMethods.clear();
+            givenDelegateFor(new SupertypeExampleClass(), mode);
+
+            whenReceiving(new ConcreteEvent());
+            whenReceiving(new OtherEvent());
+
+            thenTheOnlyMethodsInvokedAre("onBaseEvent", "onEvent");
+            thenNothingMoreShouldBeInvokedWhenReceiving(String.valueOf(1));
+        }
+    }
+
+    @Test
+    public void shouldRememberMethodsOfSupertypes() {
+        givenDelegateFor(new SupertypeExampleClass(), InvocationMode.METHOD_HANDLE);
+
+        whenReceiving(new ConcreteEvent());
+        whenReceiving(new ConcreteEvent());
+        whenReceiving(new OtherEvent());
+        whenReceiving(new OtherEvent());
+
+        assertEquals(Arrays.asList("onBaseEvent", "onBaseEvent", "onEvent", "onEvent"), invokedMethods);
+        assertEquals(2, delegate.inlineCacheHits());
+        assertEquals(2, delegate.inlineCacheMisses());
+    }
+
+    @Test(expected = DelegateException.class)
+    public void shouldThrowExceptionIfSupertypesAreAmbiguous() {
+        givenDelegateFor(new AmbiguousSupertypesClass());
+
+        whenReceiving(String.valueOf(1));
+    }
+
+    @Test
+    public void shouldNamePropertyOfInvalidFailureMode() {
+        try {
+            FailureMode.named("IGNORE");
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(FailureMode.PROPERTY_NAME));
+            assertTrue(e.getMessage().contains("IGNORE"));
+        }
+    }
+
+    @Test
+    public void shouldReportLookupFailureAccordingToFailureMode() {
+        delegate = new MethodDelegate(new AmbiguousSupertypesClass(), InvocationMode.METHOD_HANDLE, 0, FailureMode.WRAP);
+        try {
+            delegate.methodFor(String.valueOf(1));
+            fail("Expected exception");
+        } catch (DelegateException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertTrue(e.getMessage().startsWith("Exception while looking up target method"));
+            assertEquals(String.class, e.messageType());
+        }
+
+        delegate = new MethodDelegate(new AmbiguousSupertypesClass(), InvocationMode.METHOD_HANDLE, 0, FailureMode.RETHROW);
+        try {
+            delegate.methodFor(String.valueOf(1));
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("ambiguous"));
+        }
+    }
+
+    @Test
+    public void shouldWrapExceptionThrownByTargetMethod() {
+        for (final InvocationMode mode : InvocationMode.values()) {
+            givenDelegateFor(new ThrowingClass(), mode);
+
+            try {
+                whenReceiving("boom");
+                fail("Expected exception in mode: " + mode);
+            } catch (DelegateException e) {
+                assertTrue("In mode: " + mode, e.getCause() instanceof UnsupportedOperationException);
+                assertEquals(0, e.getStackTrace().length);
+                assertEquals(String.class, e.messageType());
+            }
+        }
+    }
+
+    @Test
+    public void shouldRethrowExceptionThrownByTargetMethod() {
+        for (final InvocationMode mode : InvocationMode.values()) {
+            delegate = new MethodDelegate(new ThrowingClass(), mode, 0, FailureMode.RETHROW);
+
+            try {
+                whenReceiving("boom");
+                fail("Expected exception in mode: " + mode);
+            } catch (UnsupportedOperationException e) {
+                assertEquals("boom", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void shouldWrapCheckedExceptionThrownByTargetMethodWhenRethrowing() {
+        delegate = new MethodDelegate(new CheckedThrowingClass(), InvocationMode.REFLECTION, 0, FailureMode.RETHROW);
+
+        try {
+            whenReceiving("boom");
+            fail("Expected exception");
+        } catch (DelegateException e) {
+            assertTrue(e.getCause() instanceof Exception);
+            assertEquals("onMessage", e.handler().getName());
+        }
+    }
+
+    @Test
+    public void shouldDeliverMessageToBatchMethodInListOfItsOwn() {
+        for (final InvocationMode mode : InvocationMode.values()) {
+            final BatchExampleClass target = new BatchExampleClass();
+            final MethodDelegate delegate = new MethodDelegate(target, mode);
+
+            assertTrue(delegate.onReceive(Long.valueOf(1)));
+            assertTrue(delegate.onReceive(Long.valueOf(2)));
+
+            assertEquals("In mode: " + mode, Arrays.asList(Collections.singletonList(1L), Collections.singletonList(2L)), target.batches);
+            assertTrue(delegate.hasBatchHandlers());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfBatchMethodDoesNotTakeList() {
+        new MethodDelegate(new InvalidBatchClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfMessageMethodReturnsCompletionStage() {
+        new MethodDelegate(new AsyncMessageClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfBatchMethodIsBlocking() {
+        new MethodDelegate(new BlockingBatchClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfMethodIsBothBlockingAndStateless() {
+        new MethodDelegate(new BlockingStatelessClass());
+    }
+
     /**
      * 0.012ms, 0.029, 0.03
      */
@@ -258,6 +588,132 @@ public class MethodDelegateTest {
         }
     }
 
+    public final static class CountingExampleClass implements Messages1<Long> {
+        @Override
+        public void onMessage(Long message) {
+        }
+    }
+
+    public final static class ThrowingClass implements Messages1<String> {
+        @Override
+        public void onMessage(String message) {
+            throw new UnsupportedOperationException(message);
+        }
+    }
+
+    public final static class CheckedThrowingClass implements Messages1<String> {
+        @Override
+        public void onMessage(String message) {
+            sneakyThrow(new Exception(message));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E extends Throwable> void sneakyThrow(Throwable e) throws E {
+            throw (E) e;
+        }
+    }
+
+    public interface BatchInterface extends Messages {
+        @Batch(maxSize = 10)
+        void onMessages(List<Long> messages);
+    }
+
+    public static final class BatchExampleClass implements BatchInterface {
+        private final List<List<Long>> batches = new ArrayList<>();
+
+        @Override
+        public void onMessages(List<Long> messages) {
+            batches.add(messages);
+        }
+    }
+
+    public interface InvalidBatchInterface extends Messages {
+        @Batch
+        void onMessages(Long message);
+    }
+
+    public static final class InvalidBatchClass implements InvalidBatchInterface {
+        @Override
+        public void onMessages(Long message) {
+        }
+    }
+
+    public interface AsyncMessageInterface extends Messages {
+        CompletionStage<String> onMessage(Long message);
+    }
+
+    public static final class AsyncMessageClass implements AsyncMessageInterface {
+        @Override
+        public CompletionStage<String> onMessage(Long message) {
+            return null;
+        }
+    }
+
+    public interface BlockingBatchInterface extends Messages {
+        @Blocking
+        @Batch
+        void onMessages(List<Long> messages);
+    }
+
+    public static final class BlockingBatchClass implements BlockingBatchInterface {
+        @Override
+        public void onMessages(List<Long> messages) {
+        }
+    }
+
+    public interface BlockingStatelessInterface extends Messages {
+        @Blocking
+        @Stateless
+        void onMessage(Long message);
+    }
+
+    public static final class BlockingStatelessClass implements BlockingStatelessInterface {
+        @Override
+        public void onMessage(Long message) {
+        }
+    }
+
+    public interface Event {
+    }
+
+    public static abstract class BaseEvent implements Event {
+    }
+
+    public static final class ConcreteEvent extends BaseEvent {
+    }
+
+    public static final class OtherEvent implements Event {
+    }
+
+    public interface EventHandlers extends Messages {
+        public void onEvent(Event event);
+
+        public void onBaseEvent(BaseEvent event);
+    }
+
+    public final class SupertypeExampleClass implements EventHandlers {
+
+        @Override
+        public void onEvent(Event event) {
+            invokedMethods.add("onEvent");
+        }
+
+        @Override
+        public void onBaseEvent(BaseEvent event) {
+            invokedMethods.add("onBaseEvent");
+        }
+    }
+
+    public final static class AmbiguousSupertypesClass implements Messages2<CharSequence, Comparable> {
+        @Override
+        public void onMessage2(CharSequence message) {
+        }
+
+        @Override
+        public void onMessage(Comparable message) {
+        }
+    }
+
     private MethodDelegate delegate;
     private ArrayList<String> invokedMethods;
 
@@ -278,10 +734,18 @@ public class MethodDelegateTest {
         delegate = new MethodDelegate(new ExampleClass());
     }
 
+    private void givenDelegate(InvocationMode invocationMode) {
+        delegate = new MethodDelegate(new ExampleClass(), invocationMode);
+    }
+
     private void givenDelegateFor(Object target) {
         delegate = new MethodDelegate(target);
     }
 
+    private void givenDelegateFor(Object target, InvocationMode invocationMode) {
+        delegate = new MethodDelegate(target, invocationMode);
+    }
+
     private void whenReceiving(Object aMessage) {
         assertTrue("Expected delegate to invoke method for message type: '" + ((null == aMessage) ? null : aMessage.getClass()) + "'",
                 delegate.onReceive(aMessage));
@@ -298,6 +762,12 @@ public class MethodDelegateTest {
         assertTrue("Method: '" + method + "' was not invoked", invokedMethods.contains(method));
     }
 
+    private void thenNothingMoreShouldBeInvokedWhenReceiving(Object aMessage) {
+        final int numberOfInvocations = invokedMethods.size();
+        assertFalse(delegate.onReceive(aMessage));
+        assertEquals(numberOfInvocations, invokedMethods.size());
+    }
+
     private void thenNothingShouldBeInvokedWhenReceiving(Object aMessage) {
         assertFalse(delegate.onReceive(aMessage));
         assertTrue(invokedMethods.isEmpty());
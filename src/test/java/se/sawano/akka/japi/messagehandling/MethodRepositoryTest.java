@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import org.junit.Test;
+import se.sawano.akka.japi.messagehandling.predef.Messages1;
+import se.sawano.akka.japi.messagehandling.predef.Requests1;
+import se.sawano.akka.japi.messagehandling.predef.Responses1;
+
+import static org.junit.Assert.*;
+import static se.sawano.akka.japi.messagehandling.MethodRepository.repositoryFor;
+
+public class MethodRepositoryTest {
+
+    @Test
+    public void shouldShareRepositoryBetweenInstancesOfSameClass() {
+        assertSame(repositoryFor(SomeTarget.class), repositoryFor(SomeTarget.class));
+        assertSame(repositoryFor(SomeTarget.class), repositoryFor(new SomeTarget().getClass()));
+    }
+
+    @Test
+    public void shouldNotShareRepositoryBetweenClasses() {
+        assertNotSame(repositoryFor(SomeTarget.class), repositoryFor(SomeOtherTarget.class));
+    }
+
+    @Test
+    public void shouldFailEveryTimeForClassThatCannotBeMapped() {
+        assertRepositoryCreationFails(ClashingTarget.class);
+        assertRepositoryCreationFails(ClashingTarget.class);
+    }
+
+    private void assertRepositoryCreationFails(final Class<?> targetClass) {
+        try {
+            repositoryFor(targetClass);
+            fail("Expected mapping of " + targetClass + " to fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public static final class SomeTarget implements Messages1<String> {
+        @Override
+        public void onMessage(String message) {
+        }
+    }
+
+    public static final class SomeOtherTarget implements Messages1<String> {
+        @Override
+        public void onMessage(String message) {
+        }
+    }
+
+    public static final class ClashingTarget implements Requests1<String>, Responses1<String> {
+        @Override
+        public void onRequest(String request) {
+        }
+
+        @Override
+        public void onResponse(String response) {
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import se.sawano.akka.japi.messagehandling.predef.Messages1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Target with a hand written {@link GeneratedDispatcher}, see {@link PrecompiledTarget_Dispatcher}.
+ */
+public class PrecompiledTarget implements Messages1<String> {
+
+    final List<String> receivedMessages = new ArrayList<>();
+    int dispatchedByGeneratedDispatcher;
+
+    @Override
+    public void onMessage(String message) {
+        receivedMessages.add(message);
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+/**
+ * Hand written version of what the annotation processor would generate for {@link PrecompiledTarget}, since the processor is built after
+ * this project. It also counts the messages it dispatches. The output of the processor itself is tested in the processor project.
+ */
+public final class PrecompiledTarget_Dispatcher implements GeneratedDispatcher {
+
+    @Override
+    public boolean dispatch(final Object target, final Object message) {
+        if (message.getClass() == String.class) {
+            ((PrecompiledTarget) target).dispatchedByGeneratedDispatcher++;
+            ((PrecompiledTarget) target).onMessage((String) message);
+            return true;
+        }
+        return false;
+    }
+}
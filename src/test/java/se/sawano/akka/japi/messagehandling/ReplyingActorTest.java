@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.JavaTestKit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReplyingActorTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldReplyWithReturnValueOfRequestMethod() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef replyingActor = getSystem().actorOf(Props.create(ReplyingActor.class));
+            replyingActor.tell(20, getRef());
+            expectMsgEquals(21L);
+        }};
+    }
+
+    @Test
+    public void shouldNotReplyWithNull() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef replyingActor = getSystem().actorOf(Props.create(ReplyingActor.class));
+            replyingActor.tell(-1, getRef());
+            replyingActor.tell(1, getRef());
+            expectMsgEquals(2L);
+        }};
+    }
+
+    @Test
+    public void shouldIgnoreReturnValueOfMessageMethod() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef replyingActor = getSystem().actorOf(Props.create(ReplyingActor.class));
+            replyingActor.tell("ignored", getRef());
+            replyingActor.tell(1, getRef());
+            expectMsgEquals(2L);
+        }};
+    }
+
+    @Test
+    public void shouldReplyFromMixedContract() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef replyingActor = getSystem().actorOf(Props.create(ReplyingActor.class));
+            replyingActor.tell(1.5d, getRef());
+            replyingActor.tell(1, getRef());
+            assertEquals(2L, expectMsgClass(Long.class).longValue());
+            expectNoMsg();
+        }};
+    }
+
+    public interface Contract extends Requests {
+        Long onRequest(Integer request);
+
+        void onRequest(Double request);
+    }
+
+    public interface Notifications extends Messages {
+        String onMessage(String message);
+    }
+
+    public static class ReplyingActor extends MessageDelegatingActor implements Contract, Notifications {
+        @Override
+        public Long onRequest(final Integer request) {
+            return request < 0 ? null : request + 1L;
+        }
+
+        @Override
+        public void onRequest(final Double request) {
+        }
+
+        @Override
+        public String onMessage(final String message) {
+            return message;
+        }
+    }
+}
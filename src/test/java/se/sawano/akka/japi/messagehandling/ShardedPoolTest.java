@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.routing.GetRoutees;
+import akka.routing.Routees;
+import akka.testkit.JavaTestKit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import se.sawano.akka.japi.messagehandling.predef.Messages1;
+import se.sawano.akka.japi.messagehandling.predef.Messages3;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ShardedPoolTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldRouteMessagesWithSameKeyToSameRouteeInOrder() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef router = getSystem().actorOf(ShardedPool.props(Props.create(OrderActor.class), 4), "orders");
+            for (int sequenceNumber = 0; sequenceNumber < 5; ++sequenceNumber) {
+                for (final String customer : new String[]{"a", "b", "c", "d", "e", "f"}) {
+                    router.tell(new Order(customer, sequenceNumber), getRef());
+                }
+            }
+
+            final Map<String, ActorRef> routeeByCustomer = new HashMap<>();
+            final Map<String, Integer> lastSequenceNumberByCustomer = new HashMap<>();
+            for (final Object received : receiveN(30)) {
+                final Order order = (Order) received;
+                final ActorRef previousRoutee = routeeByCustomer.put(order.customer, getLastSender());
+                assertTrue(previousRoutee == null || previousRoutee.equals(getLastSender()));
+                final Integer previous = lastSequenceNumberByCustomer.put(order.customer, order.sequenceNumber);
+                assertEquals(previous == null ? 0 : previous + 1, order.sequenceNumber);
+            }
+        }};
+    }
+
+    @Test
+    public void shouldNotRouteMessagesThatAreNotHandled() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef router = getSystem().actorOf(ShardedPool.props(Props.create(OrderActor.class), 2), "orders");
+            router.tell("not handled", getRef());
+            router.tell(1L, getRef());
+
+            expectMsgEquals(1L);
+            expectNoMsg();
+        }};
+    }
+
+    @Test
+    public void shouldRouteMessageThatIsNotSerializable() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef router = getSystem().actorOf(ShardedPool.props(Props.create(OrderActor.class), 2), "orders");
+            router.tell(new Ping(), getRef());
+
+            expectMsgClass(Ping.class);
+        }};
+    }
+
+    @Test
+    public void shouldReportQueueDepthPerRoutee() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef router = getSystem().actorOf(ShardedPool.props(Props.create(OrderActor.class), 3), "orders");
+            router.tell(GetRoutees.getInstance(), getRef());
+
+            final List<Integer> depths = ShardedPool.queueDepths(expectMsgClass(Routees.class));
+            assertEquals(3, depths.size());
+            for (final int depth : depths) {
+                assertTrue(depth >= 0);
+            }
+        }};
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAcceptShardKeyMethodForUnmappedType() {
+        ShardedPool.hashMapperFor(InvalidShardKeyActor.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAcceptHandledTypeWithoutShardKeyMethod() {
+        ShardedPool.hashMapperFor(UnkeyedActor.class);
+    }
+
+    @Test
+    public void shouldReturnExtractedKeyAsString() {
+        assertEquals("1", ShardedPool.hashMapperFor(OrderActor.class).hashKey(1L));
+        assertEquals("a", ShardedPool.hashMapperFor(OrderActor.class).hashKey(new Order("a", 1)));
+        assertNull(ShardedPool.hashMapperFor(OrderActor.class).hashKey("not handled"));
+    }
+
+    public static final class Order {
+        private final String customer;
+        private final int sequenceNumber;
+
+        public Order(final String customer, final int sequenceNumber) {
+            this.customer = customer;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+
+    public static final class Ping {
+    }
+
+    public static class OrderActor extends MessageDelegatingActor implements Messages3<Ping, Order, Long> {
+        @ShardKey
+        static Object customerOf(final Order order) {
+            return order.customer;
+        }
+
+        @ShardKey
+        static Object keyOf(final Long message) {
+            return message;
+        }
+
+        @ShardKey
+        static Object keyOf(final Ping ping) {
+            return "ping";
+        }
+
+        @Override
+        public void onMessage(final Long message) {
+            getSender().tell(message, getSelf());
+        }
+
+        @Override
+        public void onMessage2(final Order order) {
+            getSender().tell(order, getSelf());
+        }
+
+        @Override
+        public void onMessage3(final Ping ping) {
+            getSender().tell(ping, getSelf());
+        }
+    }
+
+    public static class UnkeyedActor extends MessageDelegatingActor implements Messages1<Ping> {
+        @Override
+        public void onMessage(final Ping message) {
+        }
+    }
+
+    public static class InvalidShardKeyActor extends MessageDelegatingActor implements Messages1<Long> {
+        @ShardKey
+        static Object keyOf(final String message) {
+            return message;
+        }
+
+        @Override
+        public void onMessage(final Long message) {
+        }
+    }
+}
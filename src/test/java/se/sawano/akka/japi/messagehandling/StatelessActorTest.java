@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Daniel Sawano
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.sawano.akka.japi.messagehandling;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.JavaTestKit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class StatelessActorTest {
+
+    ActorSystem system;
+
+    @Before
+    public void setUp() throws Exception {
+        system = ActorSystem.create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void shouldInvokeStatelessMethodsInParallel() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef statelessActor = getSystem().actorOf(Props.create(StatelessActor.class));
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+            statelessActor.tell(barrier, getRef());
+            statelessActor.tell(barrier, getRef());
+            expectMsgAllOf("passed", "passed");
+        }};
+    }
+
+    @Test
+    public void shouldInvokeStatelessMethodsOnTheirDispatcher() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef statelessActor = getSystem().actorOf(Props.create(StatelessActor.class));
+            statelessActor.tell("validate", getRef());
+            assertTrue(expectMsgClass(String.class).contains(Stateless.DEFAULT_DISPATCHER));
+        }};
+    }
+
+    @Test
+    public void shouldInvokeOtherMethodsInOrder() throws Exception {
+        new JavaTestKit(system) {{
+            final ActorRef statelessActor = getSystem().actorOf(Props.create(StatelessActor.class));
+            for (int i = 0; i < 10; ++i) {
+                statelessActor.tell("validate", getRef());
+                statelessActor.tell(i, getRef());
+            }
+            int expected = 0;
+            for (final Object reply : receiveN(20)) {
+                if (reply instanceof Integer) {
+                    assertEquals(expected++, reply);
+                }
+            }
+            assertEquals(10, expected);
+        }};
+    }
+
+    public interface Validator extends Requests {
+        @Stateless
+        String onRequest(CyclicBarrier request);
+
+        @Stateless
+        String onRequest(String request);
+
+        Integer onRequest(Integer request);
+    }
+
+    public static class StatelessActor extends MessageDelegatingActor implements Validator {
+        @Override
+        public String onRequest(final CyclicBarrier request) {
+            try {
+                request.await(3, TimeUnit.SECONDS);
+                return "passed";
+            } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public String onRequest(final String request) {
+            return Thread.currentThread().getName();
+        }
+
+        @Override
+        public Integer onRequest(final Integer request) {
+            return request;
+        }
+    }
+}